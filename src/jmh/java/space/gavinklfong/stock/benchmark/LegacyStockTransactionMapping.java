@@ -0,0 +1,79 @@
+package space.gavinklfong.stock.benchmark;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static software.amazon.awssdk.enhanced.dynamodb.internal.AttributeValues.numberValue;
+import static software.amazon.awssdk.enhanced.dynamodb.internal.AttributeValues.stringValue;
+
+/**
+ * The item mapping the model classes did before {@link space.gavinklfong.stock.dao.StockTransactionStorageFormat},
+ * kept as the baseline of the mapping benchmarks only.
+ */
+final class LegacyStockTransactionMapping {
+
+    private LegacyStockTransactionMapping() {
+    }
+
+    static Map<String, AttributeValue> toAttributeValues(StockTransaction transaction) {
+        Map<String, AttributeValue> attributeValueMap = new HashMap<>(Map.of(
+                "accountNumber", stringValue(transaction.getAccountNumber()),
+                "timestamp", stringValue(DateTimeFormatter.ISO_INSTANT.format(transaction.getTimestamp())),
+                "ticker", stringValue(transaction.getTicker()),
+                "tradeAction", stringValue(transaction.getTradeAction().name()),
+                "unit", numberValue(transaction.getUnit()),
+                "unitPrice", numberValue(transaction.getUnitPrice()),
+                "accountNumberTradeAction", stringValue(StockTransaction.toAccountNumberTradeAction(
+                        transaction.getAccountNumber(), transaction.getTradeAction()))
+        ));
+        if (transaction.getReference() != null) {
+            attributeValueMap.put("reference", stringValue(transaction.getReference()));
+        }
+        return attributeValueMap;
+    }
+
+    static StockTransaction toStockTransaction(Map<String, AttributeValue> item) {
+        StockTransaction.StockTransactionBuilder builder = StockTransaction.builder();
+        item.entrySet().forEach(entry -> mapItem(builder, entry));
+        return builder.build();
+    }
+
+    static StockTransactionKey toStockTransactionKey(Map<String, AttributeValue> item) {
+        StockTransactionKey.StockTransactionKeyBuilder builder = StockTransactionKey.builder();
+        item.entrySet().forEach(entry -> mapKey(builder, entry));
+        return builder.build();
+    }
+
+    private static void mapItem(StockTransaction.StockTransactionBuilder builder, Map.Entry<String, AttributeValue> entry) {
+        switch (entry.getKey()) {
+            case "accountNumber" -> builder.accountNumber(entry.getValue().s());
+            case "timestamp" -> builder.timestamp(Instant.parse(entry.getValue().s()));
+            case "tradeAction" -> builder.tradeAction(TradeAction.valueOf(entry.getValue().s()));
+            case "ticker" -> builder.ticker(entry.getValue().s());
+            case "unit" -> builder.unit(Integer.parseInt(entry.getValue().n()));
+            case "unitPrice" -> builder.unitPrice(new BigDecimal(entry.getValue().n()));
+            case "reference" -> builder.reference(entry.getValue().s());
+            case "accountNumberTradeAction" -> {
+            }
+            default -> throw new IllegalArgumentException("unknown stock transaction attribute: " + entry.getKey());
+        }
+    }
+
+    private static void mapKey(StockTransactionKey.StockTransactionKeyBuilder builder, Map.Entry<String, AttributeValue> entry) {
+        switch (entry.getKey()) {
+            case "accountNumber" -> builder.accountNumber(entry.getValue().s());
+            case "timestamp" -> builder.timestamp(Instant.parse(entry.getValue().s()));
+            case "accountNumberTradeAction" -> {
+            }
+            default -> throw new IllegalArgumentException("unknown stock transaction attribute: " + entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package space.gavinklfong.stock.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import space.gavinklfong.stock.dao.*;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end DAO throughput against DynamoDB Local started from docker/docker-compose.yaml.
+ * The endpoint can be changed with -Ddynamodb.endpoint=..., and -Ddynamodb.endpoint=memory runs against
+ * {@link InMemoryDynamoDbClient} to measure the DAO itself without the network and the database.
+ * With {@code sideTables} the schema maintains positions and claims references, so saves and bulk writes go through
+ * TransactWriteItems instead of PutItem and BatchWriteItem, as they do once those tables are configured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StockTransactionDaoBenchmark {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final Instant START_TIME = Instant.parse("2022-02-11T00:00:00Z");
+    private static final Instant END_TIME = Instant.parse("2022-02-14T00:00:00Z");
+
+    @Param({"ISO_STRING", "COMPACT"})
+    public StockTransactionStorageFormat storageFormat;
+
+    @Param({"false", "true"})
+    public boolean sideTables;
+
+    private DynamoDbClient dynamoDbClient;
+    private StockTransactionDao stockTransactionDao;
+    private List<StockTransaction> stockTransactions;
+    private int cursor;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws IOException {
+        String endpoint = System.getProperty("dynamodb.endpoint", "http://localhost:8000");
+        dynamoDbClient = endpoint.equals("memory") ? new InMemoryDynamoDbClient() : DynamoDbClient.builder()
+                .region(Region.US_EAST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("dummy", "dummy")))
+                .endpointOverride(URI.create(endpoint))
+                .build();
+
+        String suffix = "-benchmark-" + storageFormat.name().toLowerCase();
+        StockTransactionSchema schema = StockTransactionSchema.builder()
+                .tableName("stock-transaction" + suffix)
+                .storageFormat(storageFormat)
+                .positionTableName(sideTables ? "stock-position" + suffix : null)
+                .referenceTableName(sideTables ? "stock-transaction-reference" + suffix : null)
+                .build();
+
+        StockTransactionTableBuilder tableBuilder = new StockTransactionTableBuilder(dynamoDbClient, schema);
+        try {
+            tableBuilder.deleteTable();
+        } catch (ResourceNotFoundException e) {}
+        tableBuilder.createTable();
+
+        StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(new SimpleMeterRegistry());
+
+        stockTransactions = StockTransactionReader.readFromCSV();
+        new StockTransactionBatchWriter(dynamoDbClient, schema, metrics).saveStockTransactions(stockTransactions.stream());
+
+        stockTransactionDao = new StockTransactionDao(dynamoDbClient, schema, metrics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dynamoDbClient.close();
+    }
+
+    @Benchmark
+    public void saveStockTransaction() {
+        stockTransactionDao.saveStockTransaction(next());
+    }
+
+    @Benchmark
+    public QueryResultPage<StockTransaction, StockTransactionKey> findPage() {
+        return stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 20, null);
+    }
+
+    @Benchmark
+    public List<StockTransaction> findTimeRange() {
+        return stockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME);
+    }
+
+    @Benchmark
+    public List<StockTransaction> findAccountHistory() {
+        return stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER);
+    }
+
+    @Benchmark
+    public QueryResultPage<StockTransaction, StockTransactionKey> findTradeActionPage() {
+        return stockTransactionDao.findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 20, null);
+    }
+
+    @Benchmark
+    public QueryResultPage<StockTransaction, StockTransactionKey> findTradeActionPageWithFilter() {
+        return stockTransactionDao.findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL, 20, null);
+    }
+
+    // a new key every time, a conditional put of an existing transaction would be cancelled
+    private synchronized StockTransaction next() {
+        cursor = cursor + 1 == stockTransactions.size() ? 0 : cursor + 1;
+        StockTransaction transaction = stockTransactions.get(cursor);
+        return transaction.toBuilder()
+                .timestamp(transaction.getTimestamp().plusNanos(++sequence))
+                .reference(null)
+                .build();
+    }
+}
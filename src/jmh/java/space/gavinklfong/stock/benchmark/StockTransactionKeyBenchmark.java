@@ -0,0 +1,87 @@
+package space.gavinklfong.stock.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import space.gavinklfong.stock.dao.StockTransactionStorageFormat;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sort key formatting and parsing as done on every page boundary and item.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockTransactionKeyBenchmark {
+
+    private List<Instant> timestamps;
+    private List<String> formattedTimestamps;
+    private List<StockTransactionKey> keys;
+    private List<Map<String, AttributeValue>> legacyKeys;
+    private List<Map<String, AttributeValue>> compactKeys;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        keys = StockTransactionReader.readFromCSV().stream()
+                .map(stockTransaction -> StockTransactionKey.builder()
+                        .accountNumber(stockTransaction.getAccountNumber())
+                        .timestamp(stockTransaction.getTimestamp())
+                        .build())
+                .toList();
+        timestamps = keys.stream().map(StockTransactionKey::getTimestamp).toList();
+        formattedTimestamps = timestamps.stream().map(DateTimeFormatter.ISO_INSTANT::format).toList();
+        legacyKeys = keys.stream().map(StockTransactionStorageFormat.ISO_STRING::toKey).toList();
+        compactKeys = keys.stream().map(StockTransactionStorageFormat.COMPACT::toKey).toList();
+    }
+
+    @Benchmark
+    public String formatIsoInstant() {
+        return DateTimeFormatter.ISO_INSTANT.format(next(timestamps));
+    }
+
+    @Benchmark
+    public Instant parseInstant() {
+        return Instant.parse(next(formattedTimestamps));
+    }
+
+    @Benchmark
+    public StockTransactionKey decodeLegacyKey() {
+        return LegacyStockTransactionMapping.toStockTransactionKey(next(legacyKeys));
+    }
+
+    @Benchmark
+    public StockTransactionKey decodeIsoStringKey() {
+        return StockTransactionStorageFormat.ISO_STRING.toStockTransactionKey(next(legacyKeys));
+    }
+
+    @Benchmark
+    public StockTransactionKey decodeCompactKey() {
+        return StockTransactionStorageFormat.COMPACT.toStockTransactionKey(next(compactKeys));
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeIsoStringKey() {
+        return StockTransactionStorageFormat.ISO_STRING.toKey(next(keys));
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeCompactKey() {
+        return StockTransactionStorageFormat.COMPACT.toKey(next(keys));
+    }
+
+    private <T> T next(List<T> values) {
+        cursor = cursor + 1 == values.size() ? 0 : cursor + 1;
+        return values.get(cursor);
+    }
+}
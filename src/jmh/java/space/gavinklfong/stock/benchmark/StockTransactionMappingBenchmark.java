@@ -0,0 +1,75 @@
+package space.gavinklfong.stock.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import space.gavinklfong.stock.dao.StockTransactionStorageFormat;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item encode/decode of the original model mapping against the storage format mappers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockTransactionMappingBenchmark {
+
+    private List<StockTransaction> stockTransactions;
+    private List<Map<String, AttributeValue>> legacyItems;
+    private List<Map<String, AttributeValue>> compactItems;
+    private int cursor;
+
+    @Setup
+    public void setUp() throws IOException {
+        stockTransactions = StockTransactionReader.readFromCSV();
+        legacyItems = stockTransactions.stream()
+                .map(LegacyStockTransactionMapping::toAttributeValues)
+                .toList();
+        compactItems = stockTransactions.stream()
+                .map(StockTransactionStorageFormat.COMPACT::toItem)
+                .toList();
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeLegacy() {
+        return LegacyStockTransactionMapping.toAttributeValues(next(stockTransactions));
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeIsoString() {
+        return StockTransactionStorageFormat.ISO_STRING.toItem(next(stockTransactions));
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> encodeCompact() {
+        return StockTransactionStorageFormat.COMPACT.toItem(next(stockTransactions));
+    }
+
+    @Benchmark
+    public StockTransaction decodeLegacy() {
+        return LegacyStockTransactionMapping.toStockTransaction(next(legacyItems));
+    }
+
+    @Benchmark
+    public StockTransaction decodeIsoString() {
+        return StockTransactionStorageFormat.ISO_STRING.toStockTransaction(next(legacyItems));
+    }
+
+    @Benchmark
+    public StockTransaction decodeCompact() {
+        return StockTransactionStorageFormat.COMPACT.toStockTransaction(next(compactItems));
+    }
+
+    private <T> T next(List<T> values) {
+        cursor = cursor + 1 == values.size() ? 0 : cursor + 1;
+        return values.get(cursor);
+    }
+}
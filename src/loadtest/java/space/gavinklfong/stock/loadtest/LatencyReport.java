@@ -0,0 +1,116 @@
+package space.gavinklfong.stock.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and outcome counts per operation of one phase of the run. Latency is measured from the time
+ * an operation was due, not from when it started, so a stalled target shows up in the percentiles instead of
+ * slowing the load down (coordinated omission). Throttled operations are those that still failed with a
+ * throttling error after the SDK's own retries.
+ */
+@Slf4j
+final class LatencyReport {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    enum Operation {
+        SAVE, HISTORY_PAGE, TIME_RANGE, TRADE_ACTION_PAGE
+    }
+
+    private final String phase;
+    private final long startNanos = System.nanoTime();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> throttles = new EnumMap<>(Operation.class);
+    private final LongAdder dropped = new LongAdder();
+    private long lastIntervalNanos = startNanos;
+
+    LatencyReport(String phase) {
+        this.phase = phase;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS));
+            totals.put(operation, new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS));
+            errors.put(operation, new LongAdder());
+            throttles.put(operation, new LongAdder());
+        }
+    }
+
+    void recordSuccess(Operation operation, long latencyNanos) {
+        recorders.get(operation).recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    void recordFailure(Operation operation, long latencyNanos, Throwable error) {
+        recordSuccess(operation, latencyNanos);
+        if (isThrottling(error)) {
+            throttles.get(operation).increment();
+        } else {
+            errors.get(operation).increment();
+            log.debug("{} failed", operation, error);
+        }
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    synchronized void logInterval() {
+        long now = System.nanoTime();
+        double seconds = (now - lastIntervalNanos) / 1e9;
+        lastIntervalNanos = now;
+
+        StringBuilder line = new StringBuilder(phase);
+        for (Operation operation : Operation.values()) {
+            Histogram interval = recorders.get(operation).getIntervalHistogram();
+            totals.get(operation).add(interval);
+            line.append(String.format(" | %s %.0f/s p99 %.1f ms", operation, interval.getTotalCount() / seconds,
+                    millis(interval.getValueAtPercentile(99))));
+        }
+        log.info("{} | dropped {}", line, dropped.sum());
+    }
+
+    synchronized void logSummary() {
+        logInterval();
+        double seconds = (lastIntervalNanos - startNanos) / 1e9;
+        log.info("{} summary over {} s", phase, Math.round(seconds));
+        log.info(String.format("%-18s %10s %10s %9s %9s %9s %9s %9s %9s %8s %9s",
+                "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "mean ms", "errors", "throttled"));
+        long totalCount = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram total = totals.get(operation);
+            totalCount += total.getTotalCount();
+            log.info(String.format("%-18s %10d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f %8d %9d",
+                    operation, total.getTotalCount(), total.getTotalCount() / seconds,
+                    millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(90)),
+                    millis(total.getValueAtPercentile(99)), millis(total.getValueAtPercentile(99.9)),
+                    millis(total.getMaxValue()), total.getMean() / 1e6,
+                    errors.get(operation).sum(), throttles.get(operation).sum()));
+        }
+        log.info("{} operations, {} ops/s, {} dropped over max in flight", totalCount,
+                Math.round(totalCount / seconds), dropped.sum());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static boolean isThrottling(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TransactionCanceledException canceled && canceled.hasCancellationReasons()) {
+            return canceled.cancellationReasons().stream()
+                    .anyMatch(reason -> "ThrottlingError".equals(reason.code()));
+        }
+        return cause instanceof SdkServiceException serviceException && serviceException.isThrottlingException();
+    }
+}
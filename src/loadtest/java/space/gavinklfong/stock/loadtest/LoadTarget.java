@@ -0,0 +1,99 @@
+package space.gavinklfong.stock.loadtest;
+
+import space.gavinklfong.stock.dao.CachedStockTransactionDao;
+import space.gavinklfong.stock.dao.StockTransactionAsyncDao;
+import space.gavinklfong.stock.dao.StockTransactionDao;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.time.Instant;
+
+/**
+ * The operations of the load mix, on one of the DAOs. Every call returns once the operation is complete, so the
+ * asynchronous DAO is waited on by the virtual thread that issued the call.
+ */
+interface LoadTarget {
+
+    int PAGE_SIZE = 20;
+
+    void save(StockTransaction transaction);
+
+    void findHistoryPage(String accountNumber);
+
+    void findTimeRange(String accountNumber, Instant startTime, Instant endTime);
+
+    void findTradeActionPage(String accountNumber, TradeAction tradeAction);
+
+    static LoadTarget of(StockTransactionDao dao) {
+        return new LoadTarget() {
+            @Override
+            public void save(StockTransaction transaction) {
+                dao.saveStockTransaction(transaction);
+            }
+
+            @Override
+            public void findHistoryPage(String accountNumber) {
+                dao.findStockTransactionByAccountNumber(accountNumber, PAGE_SIZE, null);
+            }
+
+            @Override
+            public void findTimeRange(String accountNumber, Instant startTime, Instant endTime) {
+                dao.findStockTransactionByAccountNumberWithTimeRange(accountNumber, startTime, endTime);
+            }
+
+            @Override
+            public void findTradeActionPage(String accountNumber, TradeAction tradeAction) {
+                dao.findStockTransactionByAccountNumberAndTradeAction(accountNumber, tradeAction, PAGE_SIZE, null);
+            }
+        };
+    }
+
+    static LoadTarget of(StockTransactionAsyncDao dao) {
+        return new LoadTarget() {
+            @Override
+            public void save(StockTransaction transaction) {
+                dao.saveStockTransaction(transaction).join();
+            }
+
+            @Override
+            public void findHistoryPage(String accountNumber) {
+                dao.findStockTransactionByAccountNumber(accountNumber, PAGE_SIZE, null).join();
+            }
+
+            @Override
+            public void findTimeRange(String accountNumber, Instant startTime, Instant endTime) {
+                dao.findStockTransactionByAccountNumberWithTimeRange(accountNumber, startTime, endTime).join();
+            }
+
+            @Override
+            public void findTradeActionPage(String accountNumber, TradeAction tradeAction) {
+                dao.findStockTransactionByAccountNumberAndTradeAction(accountNumber, tradeAction, PAGE_SIZE, null).join();
+            }
+        };
+    }
+
+    // time range reads are not cached and go to the underlying DAO
+    static LoadTarget of(CachedStockTransactionDao cachedDao, StockTransactionDao dao) {
+        return new LoadTarget() {
+            @Override
+            public void save(StockTransaction transaction) {
+                cachedDao.saveStockTransaction(transaction);
+            }
+
+            @Override
+            public void findHistoryPage(String accountNumber) {
+                cachedDao.findStockTransactionByAccountNumber(accountNumber, PAGE_SIZE, null);
+            }
+
+            @Override
+            public void findTimeRange(String accountNumber, Instant startTime, Instant endTime) {
+                dao.findStockTransactionByAccountNumberWithTimeRange(accountNumber, startTime, endTime);
+            }
+
+            @Override
+            public void findTradeActionPage(String accountNumber, TradeAction tradeAction) {
+                cachedDao.findStockTransactionByAccountNumberAndTradeAction(accountNumber, tradeAction, PAGE_SIZE, null);
+            }
+        };
+    }
+}
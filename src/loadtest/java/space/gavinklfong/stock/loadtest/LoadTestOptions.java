@@ -0,0 +1,100 @@
+package space.gavinklfong.stock.loadtest;
+
+import space.gavinklfong.stock.dao.StockTransactionStorageFormat;
+
+import java.time.Duration;
+
+/**
+ * Load test settings, read from {@code loadtest.*} system properties.
+ *
+ * @param endpoint        DynamoDB endpoint, or {@code memory} for {@code InMemoryDynamoDbClient}
+ * @param target          DAO driven by the load: {@code sync}, {@code async} or {@code cached}
+ * @param storageFormat   storage format of the table the load test creates
+ * @param rate            operations per second outside bursts
+ * @param duration        length of the measured run, after warm-up
+ * @param warmUp          length of the unmeasured run before it
+ * @param writeRatio      share of writes outside bursts, the rest is split evenly over the three reads
+ * @param accounts        number of accounts trading
+ * @param skew            Zipf exponent of account popularity, 0 for uniform
+ * @param burstEvery      time between the starts of write bursts, zero for none
+ * @param burstLength     length of a write burst
+ * @param burstFactor     rate during a burst relative to {@code rate}, the extra operations all writes
+ * @param maxInFlight     operations in flight at most; operations due beyond it are dropped and counted
+ * @param preload         transactions batch written before the run so reads find history
+ * @param reportInterval  time between interval reports
+ */
+record LoadTestOptions(String endpoint,
+                       String target,
+                       StockTransactionStorageFormat storageFormat,
+                       double rate,
+                       Duration duration,
+                       Duration warmUp,
+                       double writeRatio,
+                       int accounts,
+                       double skew,
+                       Duration burstEvery,
+                       Duration burstLength,
+                       double burstFactor,
+                       int maxInFlight,
+                       int preload,
+                       Duration reportInterval) {
+
+    private static final String PREFIX = "loadtest.";
+
+    static LoadTestOptions fromSystemProperties() {
+        LoadTestOptions options = new LoadTestOptions(
+                property("endpoint", "http://localhost:8000"),
+                property("target", "sync"),
+                StockTransactionStorageFormat.valueOf(property("storage-format", "ISO_STRING")),
+                Double.parseDouble(property("rate", "200")),
+                Duration.parse(property("duration", "PT1M")),
+                Duration.parse(property("warm-up", "PT10S")),
+                Double.parseDouble(property("write-ratio", "0.2")),
+                Integer.parseInt(property("accounts", "10000")),
+                Double.parseDouble(property("skew", "1.1")),
+                Duration.parse(property("burst-every", "PT15S")),
+                Duration.parse(property("burst-length", "PT2S")),
+                Double.parseDouble(property("burst-factor", "5")),
+                Integer.parseInt(property("max-in-flight", "10000")),
+                Integer.parseInt(property("preload", "20000")),
+                Duration.parse(property("report-interval", "PT5S")));
+        options.validate();
+        return options;
+    }
+
+    // operations per second at the given time since the start of the run
+    double rateAt(Duration elapsed) {
+        return inBurst(elapsed) ? rate * burstFactor : rate;
+    }
+
+    // share of writes at the given time since the start of the run
+    double writeRatioAt(Duration elapsed) {
+        return inBurst(elapsed) ? (writeRatio + burstFactor - 1) / burstFactor : writeRatio;
+    }
+
+    private boolean inBurst(Duration elapsed) {
+        return burstEvery.isPositive() && elapsed.toNanos() % burstEvery.toNanos() < burstLength.toNanos();
+    }
+
+    private void validate() {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive: " + rate);
+        }
+        if (writeRatio < 0 || writeRatio > 1) {
+            throw new IllegalArgumentException("write-ratio must be between 0 and 1: " + writeRatio);
+        }
+        if (accounts < 1) {
+            throw new IllegalArgumentException("accounts must be positive: " + accounts);
+        }
+        if (burstFactor < 1) {
+            throw new IllegalArgumentException("burst-factor must be at least 1: " + burstFactor);
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("max-in-flight must be positive: " + maxInFlight);
+        }
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+}
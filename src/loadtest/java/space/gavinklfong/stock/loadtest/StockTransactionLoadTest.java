@@ -0,0 +1,183 @@
+package space.gavinklfong.stock.loadtest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import space.gavinklfong.stock.config.StockTransactionCacheProperties;
+import space.gavinklfong.stock.dao.*;
+import space.gavinklfong.stock.loadtest.LatencyReport.Operation;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Drives a stock transaction DAO with synthetic trade traffic ({@link TradeStream}) at a target rate and reports
+ * latency percentiles, throughput and throttling per operation ({@link LatencyReport}).
+ * <p>
+ * The load is open: operations are due at a fixed rate, raised during periodic write bursts, and each runs on a
+ * virtual thread of its own whether or not earlier ones have finished, up to {@code loadtest.max-in-flight}.
+ * Writes save one transaction; reads fetch the latest page of an account, the account's transactions of the last
+ * simulated hour, or the latest page of one trade action. The tables are created afresh and preloaded before the
+ * run. Settings are described in {@link LoadTestOptions}; against DynamoDB Local started from
+ * docker/docker-compose.yaml:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="-Dloadtest.rate=500 -Dloadtest.target=async"
+ * </pre>
+ */
+@Slf4j
+public class StockTransactionLoadTest {
+
+    private static final Duration TIME_RANGE = Duration.ofHours(1);
+
+    private final LoadTestOptions options;
+    private final TradeStream trades;
+    private final LoadTarget target;
+
+    StockTransactionLoadTest(LoadTestOptions options, TradeStream trades, LoadTarget target) {
+        this.options = options;
+        this.trades = trades;
+        this.target = target;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+        log.info("load test options: {}", options);
+
+        StockTransactionSchema schema = StockTransactionSchema.builder()
+                .tableName("stock-transaction-loadtest")
+                .storageFormat(options.storageFormat())
+                .positionTableName("stock-position-loadtest")
+                .referenceTableName("stock-transaction-reference-loadtest")
+                .build();
+        StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(new SimpleMeterRegistry());
+
+        try (DynamoDbClient dynamoDbClient = buildClient(options.endpoint());
+             DynamoDbAsyncClient dynamoDbAsyncClient = options.target().equals("async") ? buildAsyncClient(options.endpoint()) : null) {
+            StockTransactionTableBuilder tableBuilder = new StockTransactionTableBuilder(dynamoDbClient, schema);
+            try {
+                tableBuilder.deleteTable();
+            } catch (ResourceNotFoundException e) {}
+            tableBuilder.createTable();
+
+            TradeStream trades = new TradeStream(StockTransactionReader.readFromCSV(), options.accounts(), options.skew());
+            BatchWriteResult preload = new StockTransactionBatchWriter(dynamoDbClient, schema, metrics)
+                    .saveStockTransactions(Stream.generate(trades::nextTrade).limit(options.preload()));
+            log.info("preloaded {} stock transactions, {} failed", preload.getWrittenCount(), preload.getFailures().size());
+
+            StockTransactionWriteListeners writeListeners = new StockTransactionWriteListeners();
+            StockTransactionDao dao = new StockTransactionDao(dynamoDbClient, schema, metrics, writeListeners);
+            LoadTarget target = switch (options.target()) {
+                case "sync" -> LoadTarget.of(dao);
+                case "async" -> LoadTarget.of(new StockTransactionAsyncDao(dynamoDbAsyncClient, schema, metrics));
+                case "cached" -> LoadTarget.of(new CachedStockTransactionDao(dao, new StockTransactionCacheProperties(),
+                        writeListeners, new SimpleMeterRegistry()), dao);
+                default -> throw new IllegalArgumentException("unknown target: " + options.target());
+            };
+
+            StockTransactionLoadTest loadTest = new StockTransactionLoadTest(options, trades, target);
+            if (options.warmUp().isPositive()) {
+                loadTest.run(new LatencyReport("warm-up"), options.warmUp());
+            }
+            loadTest.run(new LatencyReport("run"), options.duration()).logSummary();
+        }
+    }
+
+    LatencyReport run(LatencyReport report, Duration duration) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.maxInFlight());
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(report::logInterval, options.reportInterval().toNanos(),
+                options.reportInterval().toNanos(), TimeUnit.NANOSECONDS);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            long due = start;
+            while (due < end) {
+                Duration elapsed = Duration.ofNanos(due - start);
+                Operation operation = nextOperation(elapsed);
+                long dueNanos = due;
+                due += (long) (1e9 / options.rateAt(elapsed));
+
+                long wait = dueNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!inFlight.tryAcquire()) {
+                    report.recordDropped();
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        execute(operation);
+                        report.recordSuccess(operation, System.nanoTime() - dueNanos);
+                    } catch (RuntimeException e) {
+                        report.recordFailure(operation, System.nanoTime() - dueNanos, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            reporter.shutdownNow();
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        return report;
+    }
+
+    private Operation nextOperation(Duration elapsed) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < options.writeRatioAt(elapsed)) {
+            return Operation.SAVE;
+        }
+        return switch (random.nextInt(3)) {
+            case 0 -> Operation.HISTORY_PAGE;
+            case 1 -> Operation.TIME_RANGE;
+            default -> Operation.TRADE_ACTION_PAGE;
+        };
+    }
+
+    private void execute(Operation operation) {
+        switch (operation) {
+            case SAVE -> target.save(trades.nextTrade());
+            case HISTORY_PAGE -> target.findHistoryPage(trades.nextAccountNumber());
+            case TIME_RANGE -> {
+                Instant now = trades.now();
+                target.findTimeRange(trades.nextAccountNumber(), now.minus(TIME_RANGE), now);
+            }
+            case TRADE_ACTION_PAGE -> target.findTradeActionPage(trades.nextAccountNumber(), trades.nextTradeAction());
+        }
+    }
+
+    private static DynamoDbClient buildClient(String endpoint) {
+        if (endpoint.equals("memory")) {
+            return new InMemoryDynamoDbClient();
+        }
+        return DynamoDbClient.builder()
+                .region(Region.US_EAST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("dummy", "dummy")))
+                .endpointOverride(URI.create(endpoint))
+                .build();
+    }
+
+    private static DynamoDbAsyncClient buildAsyncClient(String endpoint) {
+        if (endpoint.equals("memory")) {
+            throw new IllegalArgumentException("the async target needs a DynamoDB endpoint");
+        }
+        return DynamoDbAsyncClient.builder()
+                .region(Region.US_EAST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("dummy", "dummy")))
+                .endpointOverride(URI.create(endpoint))
+                .build();
+    }
+}
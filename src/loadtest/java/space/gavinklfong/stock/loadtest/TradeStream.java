@@ -0,0 +1,74 @@
+package space.gavinklfong.stock.loadtest;
+
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthesizes trades modeled on a sample of real ones: each trade copies the ticker, action and size of a random
+ * sample trade, with its price moved by up to 2%, for an account drawn from a Zipf distribution so that a few
+ * accounts trade far more than the rest. Trade time runs on a simulated clock that advances by up to two seconds
+ * per trade, which keeps every key unique however many threads draw trades.
+ */
+final class TradeStream {
+
+    private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+    private static final int MAX_TRADE_GAP_MILLIS = 2_000;
+    private static final int FIRST_ACCOUNT_NUMBER = 10_000_000;
+
+    private final List<StockTransaction> samples;
+    // cumulative popularity of accounts ranked by popularity, the last entry is 1
+    private final double[] accountPopularity;
+    private final AtomicLong clock = new AtomicLong(START.toEpochMilli());
+    private final AtomicLong sequence = new AtomicLong();
+
+    TradeStream(List<StockTransaction> samples, int accounts, double skew) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("no sample trades");
+        }
+        this.samples = samples;
+        this.accountPopularity = new double[accounts];
+        double total = 0;
+        for (int rank = 0; rank < accounts; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            accountPopularity[rank] = total;
+        }
+        for (int rank = 0; rank < accounts; rank++) {
+            accountPopularity[rank] /= total;
+        }
+        accountPopularity[accounts - 1] = 1;
+    }
+
+    StockTransaction nextTrade() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StockTransaction sample = samples.get(random.nextInt(samples.size()));
+        BigDecimal priceMove = BigDecimal.valueOf(1 + (random.nextDouble() - 0.5) * 0.04);
+        return sample.toBuilder()
+                .accountNumber(nextAccountNumber())
+                .timestamp(Instant.ofEpochMilli(clock.addAndGet(1 + random.nextInt(MAX_TRADE_GAP_MILLIS))))
+                .unitPrice(sample.getUnitPrice().multiply(priceMove).setScale(sample.getUnitPrice().scale(), RoundingMode.HALF_EVEN))
+                .reference("LT-" + sequence.incrementAndGet())
+                .build();
+    }
+
+    String nextAccountNumber() {
+        int rank = Arrays.binarySearch(accountPopularity, ThreadLocalRandom.current().nextDouble());
+        return Integer.toString(FIRST_ACCOUNT_NUMBER + (rank < 0 ? -rank - 1 : rank));
+    }
+
+    TradeAction nextTradeAction() {
+        return ThreadLocalRandom.current().nextBoolean() ? TradeAction.BUY : TradeAction.SELL;
+    }
+
+    // trade time of the latest trade drawn
+    Instant now() {
+        return Instant.ofEpochMilli(clock.get());
+    }
+}
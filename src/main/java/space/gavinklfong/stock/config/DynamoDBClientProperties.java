@@ -0,0 +1,45 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import software.amazon.awssdk.core.retry.RetryMode;
+
+import java.net.URI;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dynamodb.client")
+public class DynamoDBClientProperties {
+
+    public enum HttpClientType {
+        APACHE, URL_CONNECTION
+    }
+
+    private String region = "us-east-2";
+    // e.g. http://localhost:8000 for DynamoDB Local
+    private URI endpoint;
+
+    private HttpClientType httpClient = HttpClientType.APACHE;
+    private int maxConnections = 50;
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+    private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+    private Duration socketTimeout = Duration.ofSeconds(30);
+    private Duration connectionTimeToLive = Duration.ofMinutes(5);
+    private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+    private boolean useIdleConnectionReaper = true;
+    private boolean tcpKeepAlive = true;
+
+    private Duration apiCallTimeout = Duration.ofSeconds(10);
+    private Duration apiCallAttemptTimeout = Duration.ofSeconds(2);
+    // ADAPTIVE_V2 adds client side rate limiting when DynamoDB throttles
+    private RetryMode retryMode = RetryMode.STANDARD;
+    private int maxAttempts = 3;
+
+    private WarmUp warmUp = new WarmUp();
+
+    @Data
+    public static class WarmUp {
+        private boolean enabled = false;
+        private int connections = 10;
+    }
+}
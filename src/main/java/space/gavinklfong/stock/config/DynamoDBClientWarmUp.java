@@ -0,0 +1,54 @@
+package space.gavinklfong.stock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens connections to DynamoDB at startup by issuing concurrent DescribeTable calls, so the first requests
+ * after a deployment do not all pay for TCP and TLS handshakes. Failures are logged and do not stop the application.
+ */
+@Slf4j
+public class DynamoDBClientWarmUp implements ApplicationRunner {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final int connections;
+
+    public DynamoDBClientWarmUp(DynamoDbClient dynamoDbClient, String tableName, int connections) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+        this.connections = connections;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        DescribeTableRequest request = DescribeTableRequest.builder()
+                .tableName(tableName)
+                .build();
+        AtomicInteger succeeded = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                executor.execute(() -> {
+                    try {
+                        dynamoDbClient.describeTable(request);
+                        succeeded.incrementAndGet();
+                    } catch (SdkException e) {
+                        log.warn("DynamoDB warm-up call failed: {}", e.getMessage());
+                    }
+                });
+            }
+        }
+        log.info("DynamoDB warm-up completed {} of {} calls in {} ms", succeeded.get(), connections,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -1,17 +1,163 @@
 package space.gavinklfong.stock.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClientBuilder;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import space.gavinklfong.stock.dao.ShardedStockTransactionDao;
+import space.gavinklfong.stock.dao.StockTransactionCapacity;
+import space.gavinklfong.stock.dao.StockTransactionDaoMetrics;
+import space.gavinklfong.stock.dao.StockTransactionSchema;
+
+import static java.util.Objects.nonNull;
 
 @Configuration
 public class DynamoDBConfig {
 
     @Bean
-    public DynamoDbClient DynamoDBTableBuilder() {
-        return DynamoDbClient.builder()
-                .region(Region.US_EAST_2)
+    public DynamoDBMetricPublisher dynamoDBMetricPublisher(MeterRegistry meterRegistry) {
+        return new DynamoDBMetricPublisher(meterRegistry);
+    }
+
+    @Bean
+    public DynamoDbClient DynamoDBTableBuilder(DynamoDBClientProperties clientProperties,
+                                               DynamoDBMetricPublisher metricPublisher) {
+        DynamoDbClientBuilder builder = DynamoDbClient.builder()
+                .region(Region.of(clientProperties.getRegion()))
+                .httpClientBuilder(buildHttpClient(clientProperties))
+                .overrideConfiguration(buildOverrideConfiguration(clientProperties, metricPublisher));
+        if (nonNull(clientProperties.getEndpoint())) {
+            builder.endpointOverride(clientProperties.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public DynamoDbAsyncClient dynamoDbAsyncClient(DynamoDBClientProperties clientProperties,
+                                                   DynamoDBMetricPublisher metricPublisher) {
+        DynamoDbAsyncClientBuilder builder = DynamoDbAsyncClient.builder()
+                .region(Region.of(clientProperties.getRegion()))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(clientProperties.getMaxConnections())
+                        .connectionTimeout(clientProperties.getConnectionTimeout())
+                        .connectionAcquisitionTimeout(clientProperties.getConnectionAcquisitionTimeout())
+                        .readTimeout(clientProperties.getSocketTimeout())
+                        .writeTimeout(clientProperties.getSocketTimeout())
+                        .connectionTimeToLive(clientProperties.getConnectionTimeToLive())
+                        .connectionMaxIdleTime(clientProperties.getConnectionMaxIdleTime())
+                        .useIdleConnectionReaper(clientProperties.isUseIdleConnectionReaper())
+                        .tcpKeepAlive(clientProperties.isTcpKeepAlive()))
+                .overrideConfiguration(buildOverrideConfiguration(clientProperties, metricPublisher));
+        if (nonNull(clientProperties.getEndpoint())) {
+            builder.endpointOverride(clientProperties.getEndpoint());
+        }
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamodb.client.warm-up", name = "enabled", havingValue = "true")
+    public DynamoDBClientWarmUp dynamoDBClientWarmUp(DynamoDbClient dynamoDbClient,
+                                                     StockTransactionSchema stockTransactionSchema,
+                                                     DynamoDBClientProperties clientProperties) {
+        return new DynamoDBClientWarmUp(dynamoDbClient, stockTransactionSchema.getTableName(),
+                clientProperties.getWarmUp().getConnections());
+    }
+
+    private static SdkHttpClient.Builder<?> buildHttpClient(DynamoDBClientProperties clientProperties) {
+        return switch (clientProperties.getHttpClient()) {
+            case APACHE -> ApacheHttpClient.builder()
+                    .maxConnections(clientProperties.getMaxConnections())
+                    .connectionTimeout(clientProperties.getConnectionTimeout())
+                    .connectionAcquisitionTimeout(clientProperties.getConnectionAcquisitionTimeout())
+                    .socketTimeout(clientProperties.getSocketTimeout())
+                    .connectionTimeToLive(clientProperties.getConnectionTimeToLive())
+                    .connectionMaxIdleTime(clientProperties.getConnectionMaxIdleTime())
+                    .useIdleConnectionReaper(clientProperties.isUseIdleConnectionReaper())
+                    .tcpKeepAlive(clientProperties.isTcpKeepAlive());
+            // no pooling settings, for environments where the Apache client is not wanted
+            case URL_CONNECTION -> UrlConnectionHttpClient.builder()
+                    .connectionTimeout(clientProperties.getConnectionTimeout())
+                    .socketTimeout(clientProperties.getSocketTimeout());
+        };
+    }
+
+    private static ClientOverrideConfiguration buildOverrideConfiguration(DynamoDBClientProperties clientProperties,
+                                                                          DynamoDBMetricPublisher metricPublisher) {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(clientProperties.getApiCallTimeout())
+                .apiCallAttemptTimeout(clientProperties.getApiCallAttemptTimeout())
+                .retryStrategy(AwsRetryStrategy.forRetryMode(clientProperties.getRetryMode())
+                        .toBuilder()
+                        .maxAttempts(clientProperties.getMaxAttempts())
+                        .build())
+                .addMetricPublisher(metricPublisher)
+                .build();
+    }
+
+    @Bean
+    public StockTransactionSchema stockTransactionSchema(StockTransactionTableProperties tableProperties) {
+        return StockTransactionSchema.builder()
+                .tableName(tableProperties.getName())
+                .storageFormat(tableProperties.getStorageFormat())
+                .positionTableName(tableProperties.getPositionTableName())
+                .referenceTableName(tableProperties.getReferenceTableName())
+                .tickerIndex(tableProperties.isTickerIndex())
+                .capacity(buildCapacity(tableProperties))
                 .build();
     }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "stock-transaction.sharded-table", name = "name")
+    public ShardedStockTransactionDao shardedStockTransactionDao(DynamoDbClient dynamoDbClient,
+                                                                 StockTransactionShardedTableProperties shardedTableProperties,
+                                                                 StockTransactionDaoMetrics metrics) {
+        if (shardedTableProperties.getShardCount() < 1) {
+            throw new IllegalArgumentException("stock-transaction.sharded-table.shard-count must be at least 1: "
+                    + shardedTableProperties.getShardCount());
+        }
+        StockTransactionSchema schema = StockTransactionSchema.builder()
+                .tableName(shardedTableProperties.getName())
+                .storageFormat(shardedTableProperties.getStorageFormat())
+                .shardCount(shardedTableProperties.getShardCount())
+                .build();
+        return new ShardedStockTransactionDao(dynamoDbClient, schema, metrics, shardedTableProperties.getMaxLookback());
+    }
+
+    // the units and share are only used when provisioned, where DynamoDB and the bulk limiters need them positive
+    private static StockTransactionCapacity buildCapacity(StockTransactionTableProperties tableProperties) {
+        StockTransactionCapacity capacity = StockTransactionCapacity.builder()
+                .billingMode(tableProperties.getBillingMode())
+                .readCapacityUnits(tableProperties.getReadCapacityUnits())
+                .writeCapacityUnits(tableProperties.getWriteCapacityUnits())
+                .bulkShare(tableProperties.getBulkCapacityShare())
+                .build();
+        if (!capacity.isProvisioned()) {
+            return capacity;
+        }
+
+        if (capacity.getReadCapacityUnits() < 1) {
+            throw new IllegalArgumentException("stock-transaction.table.read-capacity-units must be at least 1 "
+                    + "with provisioned billing: " + capacity.getReadCapacityUnits());
+        }
+        if (capacity.getWriteCapacityUnits() < 1) {
+            throw new IllegalArgumentException("stock-transaction.table.write-capacity-units must be at least 1 "
+                    + "with provisioned billing: " + capacity.getWriteCapacityUnits());
+        }
+        if (!(capacity.getBulkShare() > 0 && capacity.getBulkShare() <= 1)) {
+            throw new IllegalArgumentException("stock-transaction.table.bulk-capacity-share must be above 0 and at most 1 "
+                    + "with provisioned billing: " + capacity.getBulkShare());
+        }
+        return capacity;
+    }
 }
@@ -0,0 +1,50 @@
+package space.gavinklfong.stock.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.util.List;
+
+/**
+ * Publishes the SDK's per-call metrics to Micrometer: retries and throttled attempts, which are not visible
+ * in the responses returned to the DAOs.
+ */
+public class DynamoDBMetricPublisher implements MetricPublisher {
+
+    static final String RETRIES_COUNTER = "dynamodb.client.retries";
+    static final String THROTTLED_ATTEMPTS_COUNTER = "dynamodb.client.throttled.attempts";
+
+    private static final String THROTTLING_ERROR_TYPE = "Throttling";
+
+    private final MeterRegistry meterRegistry;
+
+    public DynamoDBMetricPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        List<String> operationNames = metricCollection.metricValues(CoreMetric.OPERATION_NAME);
+        String operation = operationNames.isEmpty() ? "unknown" : operationNames.get(0);
+
+        int retries = metricCollection.metricValues(CoreMetric.RETRY_COUNT).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        if (retries > 0) {
+            meterRegistry.counter(RETRIES_COUNTER, "operation", operation).increment(retries);
+        }
+
+        long throttledAttempts = metricCollection.childrenWithName("ApiCallAttempt")
+                .filter(attempt -> attempt.metricValues(CoreMetric.ERROR_TYPE).contains(THROTTLING_ERROR_TYPE))
+                .count();
+        if (throttledAttempts > 0) {
+            meterRegistry.counter(THROTTLED_ATTEMPTS_COUNTER, "operation", operation).increment(throttledAttempts);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,13 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.cache")
+public class StockTransactionCacheProperties {
+    private long maximumSize = 10_000;
+    private Duration expireAfterWrite = Duration.ofSeconds(30);
+}
@@ -0,0 +1,13 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.export")
+public class StockTransactionExportProperties {
+    private Path directory;
+    private int segments = 4;
+}
@@ -0,0 +1,36 @@
+package space.gavinklfong.stock.config;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import space.gavinklfong.stock.dao.StockTransactionExporter;
+import space.gavinklfong.stock.dao.StockTransactionSchema;
+
+import java.io.IOException;
+
+/**
+ * Exports the stock transaction table into {@code stock-transaction.export.directory} at startup, e.g. run as
+ * {@code java -jar stock-transaction.jar --stock-transaction.export.directory=/data/export}. Running it again
+ * with the same directory and segment count resumes an interrupted export from its checkpoints.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stock-transaction.export", name = "directory")
+public class StockTransactionExportRunner implements ApplicationRunner {
+
+    private final StockTransactionExporter exporter;
+    private final StockTransactionSchema schema;
+    private final StockTransactionExportProperties properties;
+
+    public StockTransactionExportRunner(StockTransactionExporter exporter, StockTransactionSchema schema,
+                                        StockTransactionExportProperties properties) {
+        this.exporter = exporter;
+        this.schema = schema;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        exporter.export(schema, properties.getDirectory(), properties.getSegments());
+    }
+}
@@ -0,0 +1,14 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.import")
+public class StockTransactionImportProperties {
+    private Path file;
+    private int parserThreads = Runtime.getRuntime().availableProcessors();
+    private int writeParallelism = 8;
+}
@@ -0,0 +1,39 @@
+package space.gavinklfong.stock.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import space.gavinklfong.stock.dao.StockTransactionImporter;
+import space.gavinklfong.stock.model.ImportResult;
+
+import java.io.IOException;
+
+/**
+ * Imports {@code stock-transaction.import.file} at startup, e.g. for a historical backfill run as
+ * {@code java -jar stock-transaction.jar --stock-transaction.import.file=/data/stock_transaction.csv}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "stock-transaction.import", name = "file")
+public class StockTransactionImportRunner implements ApplicationRunner {
+
+    private final StockTransactionImporter importer;
+    private final StockTransactionImportProperties properties;
+
+    public StockTransactionImportRunner(StockTransactionImporter importer, StockTransactionImportProperties properties) {
+        this.importer = importer;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        ImportResult result = importer.importCsv(properties.getFile(), properties.getParserThreads(),
+                properties.getWriteParallelism());
+        if (result.getWriteResult().hasFailures() || result.getMalformedRowCount() > 0) {
+            log.warn("import of {} incomplete: {} rows failed to write, {} malformed", properties.getFile(),
+                    result.getWriteResult().getFailures().size(), result.getMalformedRowCount());
+        }
+    }
+}
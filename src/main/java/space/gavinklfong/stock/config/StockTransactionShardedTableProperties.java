@@ -0,0 +1,18 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import space.gavinklfong.stock.dao.StockTransactionStorageFormat;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.sharded-table")
+public class StockTransactionShardedTableProperties {
+    // opt-in: a write-sharded table of its own, read and written by ShardedStockTransactionDao only
+    private String name;
+    private StockTransactionStorageFormat storageFormat = StockTransactionStorageFormat.ISO_STRING;
+    private int shardCount = 4;
+    // how far back from the end of a requested range days are queried, each one costing a query per shard
+    private Duration maxLookback = Duration.ofDays(366);
+}
@@ -0,0 +1,27 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import space.gavinklfong.stock.dao.StockTransactionStorageFormat;
+
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.table")
+public class StockTransactionTableProperties {
+    private String name = TABLE_NAME;
+    private StockTransactionStorageFormat storageFormat = StockTransactionStorageFormat.ISO_STRING;
+    // opt-in: with either table set, every save and bulk chunk becomes a conditional TransactWriteItems
+    private String positionTableName;
+    private String referenceTableName;
+    // opt-in: the index is partitioned by ticker, so every trade of a popular ticker lands on one index partition,
+    // and a throttled index throttles the table's writes with it
+    private boolean tickerIndex;
+    private BillingMode billingMode = BillingMode.PAY_PER_REQUEST;
+    // used when provisioned, for the table, its indexes and the position and reference tables alike
+    private long readCapacityUnits = 5;
+    private long writeCapacityUnits = 5;
+    // share of provisioned capacity bulk jobs pace themselves to
+    private double bulkCapacityShare = 0.5;
+}
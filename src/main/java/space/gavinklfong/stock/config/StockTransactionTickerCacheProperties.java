@@ -0,0 +1,13 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.ticker-cache")
+public class StockTransactionTickerCacheProperties {
+    private long maximumSize = 2_000;
+    private Duration expireAfterWrite = Duration.ofMinutes(1);
+}
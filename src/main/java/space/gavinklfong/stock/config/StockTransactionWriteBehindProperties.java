@@ -0,0 +1,19 @@
+package space.gavinklfong.stock.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "stock-transaction.write-behind")
+public class StockTransactionWriteBehindProperties {
+    private boolean enabled = false;
+    private int capacity = 10_000;
+    private int flushSize = 500;
+    private Duration flushInterval = Duration.ofMillis(50);
+    private Duration offerTimeout = Duration.ofSeconds(1);
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+    // flushes a transaction gets before it is given up and kept for StockTransactionWriteBehindBuffer.drainFailures
+    private int maxFlushAttempts = 3;
+}
@@ -0,0 +1,16 @@
+package space.gavinklfong.stock.controller;
+
+/**
+ * A request parameter or cursor the client got wrong, answered with 400 and the message. Anything else that goes
+ * wrong while serving the request is a server error, whatever its type.
+ */
+class InvalidRequestException extends RuntimeException {
+
+    InvalidRequestException(String message) {
+        super(message);
+    }
+
+    InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,162 @@
+package space.gavinklfong.stock.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import space.gavinklfong.stock.dao.StockTransactionDao;
+import space.gavinklfong.stock.model.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Account history over HTTP. Pages are fetched one request at a time with an opaque cursor, newest first; the
+ * streaming endpoints send the whole range oldest first as NDJSON or Server-Sent Events, writing each DynamoDB
+ * page as soon as it is read, so the first bytes go out after one query and memory is bounded by a page.
+ * A stream that broke off resumes from the cursor of the last transaction received, carried on each NDJSON line
+ * and as the id of each event. Without {@code from} and {@code to} the range is all transactions up to now.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/accounts/{accountNumber}/transactions")
+public class StockTransactionController {
+
+    static final int MAX_PAGE_SIZE = 1_000;
+    private static final Duration SSE_TIMEOUT = Duration.ofMinutes(10);
+    private static final Executor SSE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final StockTransactionDao stockTransactionDao;
+    private final ObjectMapper objectMapper;
+
+    public StockTransactionController(StockTransactionDao stockTransactionDao, ObjectMapper objectMapper) {
+        this.stockTransactionDao = stockTransactionDao;
+        this.objectMapper = objectMapper;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public StockTransactionPage findStockTransactions(@PathVariable String accountNumber,
+                                                      @RequestParam(required = false) Instant from,
+                                                      @RequestParam(required = false) Instant to,
+                                                      @RequestParam(defaultValue = "100") int pageSize,
+                                                      @RequestParam(required = false) String cursor) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidRequestException("pageSize must be between 1 and " + MAX_PAGE_SIZE + ": " + pageSize);
+        }
+
+        QueryResultPage<StockTransaction, StockTransactionKey> page = stockTransactionDao
+                .findStockTransactionByAccountNumberWithTimeRange(accountNumber, startOf(from), endOf(to), pageSize,
+                        isNull(cursor) ? null : decode(accountNumber, cursor));
+        return new StockTransactionPage(page.getResults(),
+                isNull(page.getNextQueryKey()) ? null : StockTransactionCursor.encode(page.getNextQueryKey()));
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStockTransactions(@PathVariable String accountNumber,
+                                                                         @RequestParam(required = false) Instant from,
+                                                                         @RequestParam(required = false) Instant to,
+                                                                         @RequestParam(required = false) String cursor) {
+        Instant startTime = resumeFrom(accountNumber, from, cursor);
+        Instant endTime = endOf(to);
+
+        StreamingResponseBody body = out -> {
+            try (Stream<List<StockTransaction>> pages = stockTransactionDao
+                    .streamStockTransactionPagesByAccountNumberWithTimeRange(accountNumber, startTime, endTime)) {
+                Iterator<List<StockTransaction>> iterator = pages.iterator();
+                while (iterator.hasNext()) {
+                    for (StockTransaction transaction : iterator.next()) {
+                        out.write(objectMapper.writeValueAsBytes(new StockTransactionStreamLine(
+                                StockTransactionCursor.encode(toKey(transaction)), transaction)));
+                        out.write('\n');
+                    }
+                    out.flush();
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStockTransactionEvents(@PathVariable String accountNumber,
+                                                   @RequestParam(required = false) Instant from,
+                                                   @RequestParam(required = false) Instant to,
+                                                   @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        Instant startTime = resumeFrom(accountNumber, from, lastEventId);
+        Instant endTime = endOf(to);
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT.toMillis());
+        SSE_EXECUTOR.execute(() -> {
+            try (Stream<List<StockTransaction>> pages = stockTransactionDao
+                    .streamStockTransactionPagesByAccountNumberWithTimeRange(accountNumber, startTime, endTime)) {
+                Iterator<List<StockTransaction>> iterator = pages.iterator();
+                while (iterator.hasNext()) {
+                    for (StockTransaction transaction : iterator.next()) {
+                        emitter.send(SseEmitter.event()
+                                .id(StockTransactionCursor.encode(toKey(transaction)))
+                                .name("transaction")
+                                .data(transaction, MediaType.APPLICATION_JSON));
+                    }
+                }
+                emitter.complete();
+            } catch (IOException | RuntimeException e) {
+                log.debug("stock transaction event stream of {} ended early", accountNumber, e);
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ProblemDetail handleInvalidRequest(InvalidRequestException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    // a stream resumes right after the transaction the cursor points at
+    private static Instant resumeFrom(String accountNumber, Instant from, String cursor) {
+        Instant startTime = startOf(from);
+        if (isNull(cursor)) {
+            return startTime;
+        }
+        Instant after = decode(accountNumber, cursor).getTimestamp().plusNanos(1);
+        return after.isAfter(startTime) ? after : startTime;
+    }
+
+    private static StockTransactionKey decode(String accountNumber, String cursor) {
+        StockTransactionKey key = StockTransactionCursor.decode(cursor);
+        if (!key.getAccountNumber().equals(accountNumber)) {
+            throw new InvalidRequestException("cursor does not belong to account " + accountNumber);
+        }
+        return key;
+    }
+
+    private static Instant startOf(Instant from) {
+        return isNull(from) ? Instant.EPOCH : from;
+    }
+
+    private static Instant endOf(Instant to) {
+        return isNull(to) ? Instant.now() : to;
+    }
+
+    private static StockTransactionKey toKey(StockTransaction transaction) {
+        return StockTransactionKey.builder()
+                .accountNumber(transaction.getAccountNumber())
+                .timestamp(transaction.getTimestamp())
+                .build();
+    }
+}
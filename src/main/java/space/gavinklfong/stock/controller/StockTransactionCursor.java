@@ -0,0 +1,41 @@
+package space.gavinklfong.stock.controller;
+
+import space.gavinklfong.stock.model.StockTransactionKey;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Opaque paging token for a {@link StockTransactionKey}: the account number and timestamp, base64url encoded so
+ * clients pass it back unchanged rather than building keys themselves.
+ */
+final class StockTransactionCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private StockTransactionCursor() {
+    }
+
+    static String encode(StockTransactionKey key) {
+        String text = key.getAccountNumber() + SEPARATOR + key.getTimestampFormatted();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static StockTransactionKey decode(String cursor) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = text.lastIndexOf(SEPARATOR);
+            if (separator < 1) {
+                throw new InvalidRequestException("malformed cursor: " + cursor);
+            }
+            return StockTransactionKey.builder()
+                    .accountNumber(text.substring(0, separator))
+                    .timestamp(Instant.parse(text.substring(separator + 1)))
+                    .build();
+        } catch (DateTimeException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("malformed cursor: " + cursor, e);
+        }
+    }
+}
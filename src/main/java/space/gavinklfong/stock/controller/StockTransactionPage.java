@@ -0,0 +1,11 @@
+package space.gavinklfong.stock.controller;
+
+import space.gavinklfong.stock.model.StockTransaction;
+
+import java.util.List;
+
+/**
+ * A page of an account's history, {@code nextCursor} being null on the last page.
+ */
+public record StockTransactionPage(List<StockTransaction> results, String nextCursor) {
+}
@@ -0,0 +1,10 @@
+package space.gavinklfong.stock.controller;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import space.gavinklfong.stock.model.StockTransaction;
+
+/**
+ * An NDJSON line of a stream: the transaction's fields, plus the cursor a broken-off stream resumes after it from.
+ */
+public record StockTransactionStreamLine(String cursor, @JsonUnwrapped StockTransaction transaction) {
+}
@@ -0,0 +1,102 @@
+package space.gavinklfong.stock.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+import space.gavinklfong.stock.config.StockTransactionCacheProperties;
+import space.gavinklfong.stock.model.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Service
+public class CachedStockTransactionDao {
+
+    static final String CACHE_NAME = "stockTransactionPages";
+
+    private final StockTransactionDao stockTransactionDao;
+    private final Cache<PageCacheKey, QueryResultPage<StockTransaction, StockTransactionKey>> pageCache;
+
+    // the cached keys of each account, so a write invalidates exactly the pages of its account
+    private final Map<String, Set<PageCacheKey>> keysByAccount = new ConcurrentHashMap<>();
+
+    public CachedStockTransactionDao(StockTransactionDao stockTransactionDao,
+                                     StockTransactionCacheProperties cacheProperties,
+                                     StockTransactionWriteListeners writeListeners,
+                                     MeterRegistry meterRegistry) {
+        this.stockTransactionDao = stockTransactionDao;
+        this.pageCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getExpireAfterWrite())
+                .<PageCacheKey, QueryResultPage<StockTransaction, StockTransactionKey>>evictionListener(
+                        (key, page, cause) -> unindex(key))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pageCache, CACHE_NAME);
+        writeListeners.add(transaction -> invalidate(transaction.getAccountNumber()));
+    }
+
+    public void saveStockTransaction(StockTransaction transaction) {
+        stockTransactionDao.saveStockTransaction(transaction);
+    }
+
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumber(String accountNumber, int pageSize,
+                                                                                                      StockTransactionKey exclusiveStartKey) {
+        return getOrLoad(new PageCacheKey(accountNumber, exclusiveStartKey, pageSize, null),
+                () -> stockTransactionDao.findStockTransactionByAccountNumber(accountNumber, pageSize, exclusiveStartKey));
+    }
+
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberAndTradeAction(String accountNumber,
+                                                                                                                   TradeAction tradeAction,
+                                                                                                                   int pageSize,
+                                                                                                                   StockTransactionKey exclusiveStartKey) {
+        return getOrLoad(new PageCacheKey(accountNumber, exclusiveStartKey, pageSize, tradeAction),
+                () -> stockTransactionDao.findStockTransactionByAccountNumberAndTradeAction(accountNumber, tradeAction,
+                        pageSize, exclusiveStartKey));
+    }
+
+    private void invalidate(String accountNumber) {
+        Set<PageCacheKey> keys = keysByAccount.remove(accountNumber);
+        if (keys != null) {
+            pageCache.invalidateAll(keys);
+        }
+    }
+
+    // concurrent misses of a page wait for one load. The key is indexed before the load starts, so a write landing
+    // meanwhile finds it, and invalidating it waits for the load and removes the page it read
+    private QueryResultPage<StockTransaction, StockTransactionKey> getOrLoad(
+            PageCacheKey key, Supplier<QueryResultPage<StockTransaction, StockTransactionKey>> loader) {
+        return pageCache.get(key, k -> {
+            index(k);
+            try {
+                return loader.get();
+            } catch (RuntimeException e) {
+                unindex(k);
+                throw e;
+            }
+        });
+    }
+
+    private void index(PageCacheKey key) {
+        keysByAccount.compute(key.accountNumber(), (accountNumber, keys) -> {
+            Set<PageCacheKey> indexed = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            indexed.add(key);
+            return indexed;
+        });
+    }
+
+    private void unindex(PageCacheKey key) {
+        keysByAccount.computeIfPresent(key.accountNumber(), (accountNumber, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private record PageCacheKey(String accountNumber, StockTransactionKey exclusiveStartKey, int pageSize,
+                                TradeAction tradeAction) {
+    }
+}
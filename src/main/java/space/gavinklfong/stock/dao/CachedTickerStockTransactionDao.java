@@ -0,0 +1,122 @@
+package space.gavinklfong.stock.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import space.gavinklfong.stock.config.StockTransactionTickerCacheProperties;
+import space.gavinklfong.stock.model.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches pages of the ticker index for repeated surveillance sweeps over the same tickers and time windows.
+ * Caffeine admits and evicts by how often a page is requested, so the pages of popular tickers stay while one-off
+ * lookups pass through. Every transaction written evicts the cached pages of its ticker whose window covers it.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "stock-transaction.table", name = "ticker-index", havingValue = "true")
+public class CachedTickerStockTransactionDao {
+
+    static final String CACHE_NAME = "stockTransactionTickerPages";
+    private static final int GENERATION_STRIPES = 256;
+
+    private final StockTransactionDao stockTransactionDao;
+    private final Cache<TickerPageCacheKey, QueryResultPage<StockTransaction, StockTransactionKey>> pageCache;
+
+    // the cached keys of each ticker, so a write only looks at the windows of its own ticker
+    private final Map<String, Set<TickerPageCacheKey>> keysByTicker = new ConcurrentHashMap<>();
+
+    // bumped on every write to a ticker, so a page loaded concurrently with the write is never left in the cache
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CachedTickerStockTransactionDao(StockTransactionDao stockTransactionDao,
+                                           StockTransactionTickerCacheProperties cacheProperties,
+                                           StockTransactionWriteListeners writeListeners,
+                                           MeterRegistry meterRegistry) {
+        this.stockTransactionDao = stockTransactionDao;
+        this.pageCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .expireAfterWrite(cacheProperties.getExpireAfterWrite())
+                .<TickerPageCacheKey, QueryResultPage<StockTransaction, StockTransactionKey>>evictionListener(
+                        (key, page, cause) -> unindex(key))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pageCache, CACHE_NAME);
+        writeListeners.add(transaction -> invalidate(transaction.getTicker(), transaction.getTimestamp()));
+    }
+
+    public void saveStockTransaction(StockTransaction transaction) {
+        stockTransactionDao.saveStockTransaction(transaction);
+    }
+
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByTickerWithTimeRange(
+            String ticker, Instant startTime, Instant endTime, int pageSize, StockTransactionKey exclusiveStartKey) {
+        TickerPageCacheKey key = new TickerPageCacheKey(ticker, startTime, endTime, pageSize, exclusiveStartKey);
+        QueryResultPage<StockTransaction, StockTransactionKey> page = pageCache.getIfPresent(key);
+        if (page != null) {
+            return page;
+        }
+
+        int stripe = stripe(ticker);
+        long generation = generations.get(stripe);
+        page = stockTransactionDao.findStockTransactionByTickerWithTimeRange(ticker, startTime, endTime, pageSize,
+                exclusiveStartKey);
+        index(key);
+        pageCache.put(key, page);
+
+        if (generations.get(stripe) != generation) {
+            log.debug("discard page of ticker {} loaded concurrently with a write", ticker);
+            if (pageCache.asMap().remove(key, page)) {
+                unindex(key);
+            }
+        }
+        return page;
+    }
+
+    private void invalidate(String ticker, Instant timestamp) {
+        generations.incrementAndGet(stripe(ticker));
+        List<TickerPageCacheKey> covering = keysByTicker.getOrDefault(ticker, Set.of()).stream()
+                .filter(key -> key.covers(timestamp))
+                .toList();
+        covering.forEach(this::unindex);
+        pageCache.invalidateAll(covering);
+    }
+
+    // added under the map's lock for the ticker, so unindexing its last key cannot drop the set being added to
+    private void index(TickerPageCacheKey key) {
+        keysByTicker.compute(key.ticker(), (ticker, keys) -> {
+            Set<TickerPageCacheKey> indexed = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            indexed.add(key);
+            return indexed;
+        });
+    }
+
+    private void unindex(TickerPageCacheKey key) {
+        keysByTicker.computeIfPresent(key.ticker(), (ticker, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static int stripe(String ticker) {
+        return Math.floorMod(ticker.hashCode(), GENERATION_STRIPES);
+    }
+
+    private record TickerPageCacheKey(String ticker, Instant startTime, Instant endTime, int pageSize,
+                                      StockTransactionKey exclusiveStartKey) {
+
+        boolean covers(Instant timestamp) {
+            return !timestamp.isBefore(startTime) && !timestamp.isAfter(endTime);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package space.gavinklfong.stock.dao;
+
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Token bucket of capacity units per second, shared by the workers of a bulk job so together they stay within a
+ * capacity budget. The cost of a request is only known from its response, so workers wait for a non-negative
+ * balance before each request and are charged afterwards; a large page leaves the bucket in debt, which the
+ * following requests wait out.
+ */
+public class CapacityRateLimiter {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double unitsPerSecond;
+    private final double burst;
+    private double available;
+    private long refilledAt;
+
+    public CapacityRateLimiter(double unitsPerSecond) {
+        this(unitsPerSecond, unitsPerSecond);
+    }
+
+    public CapacityRateLimiter(double unitsPerSecond, double burst) {
+        if (unitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("capacity units per second and burst must be positive: "
+                    + unitsPerSecond + ", " + burst);
+        }
+        this.unitsPerSecond = unitsPerSecond;
+        this.burst = burst;
+        this.available = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    public double getUnitsPerSecond() {
+        return unitsPerSecond;
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = nanosUntilAvailable()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public void consume(ConsumedCapacity consumedCapacity) {
+        if (nonNull(consumedCapacity) && nonNull(consumedCapacity.capacityUnits())) {
+            consume(consumedCapacity.capacityUnits());
+        }
+    }
+
+    public void consume(Collection<ConsumedCapacity> consumedCapacities) {
+        consumedCapacities.forEach(this::consume);
+    }
+
+    public synchronized void consume(double units) {
+        refill();
+        available -= units;
+    }
+
+    private synchronized long nanosUntilAvailable() {
+        refill();
+        return available >= 0 ? 0 : (long) Math.ceil(-available / unitsPerSecond * NANOS_PER_SECOND);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(burst, available + (now - refilledAt) * unitsPerSecond / NANOS_PER_SECOND);
+        refilledAt = now;
+    }
+}
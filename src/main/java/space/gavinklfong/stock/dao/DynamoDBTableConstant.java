@@ -2,5 +2,9 @@ package space.gavinklfong.stock.dao;
 
 public interface DynamoDBTableConstant {
     String TABLE_NAME = "stock-transaction";
+    String POSITION_TABLE_NAME = "stock-position";
+    String REFERENCE_TABLE_NAME = "stock-transaction-reference";
     String SHOW_ITEM_SORT_KEY = "SHOW";
+    String ACCOUNT_TRADE_ACTION_INDEX = "accountNumberTradeAction-timestamp-index";
+    String TICKER_INDEX = "ticker-timestamp-index";
 }
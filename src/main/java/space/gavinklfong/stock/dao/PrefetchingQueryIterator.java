@@ -0,0 +1,78 @@
+package space.gavinklfong.stock.dao;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Walks query pages by LastEvaluatedKey and requests the following page as soon as the current one is handed out,
+ * so at most two pages are held while the caller consumes the results. The first page is only requested once the
+ * caller starts iterating, so building the stream never calls DynamoDB and its failures surface from the iteration.
+ */
+final class PrefetchingQueryIterator implements Iterator<QueryResponse>, AutoCloseable {
+
+    private final Function<Map<String, AttributeValue>, QueryResponse> pageFetcher;
+    private final Executor executor;
+    private CompletableFuture<QueryResponse> nextPage;
+    private boolean started;
+
+    PrefetchingQueryIterator(Function<Map<String, AttributeValue>, QueryResponse> pageFetcher, Executor executor) {
+        this.pageFetcher = pageFetcher;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            nextPage = fetch(null);
+        }
+        return nonNull(nextPage);
+    }
+
+    @Override
+    public QueryResponse next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        QueryResponse page = join(nextPage);
+        nextPage = page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty()
+                ? fetch(page.lastEvaluatedKey())
+                : null;
+        return page;
+    }
+
+    @Override
+    public void close() {
+        started = true;
+        if (nonNull(nextPage)) {
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    private CompletableFuture<QueryResponse> fetch(Map<String, AttributeValue> exclusiveStartKey) {
+        return CompletableFuture.supplyAsync(() -> pageFetcher.apply(exclusiveStartKey), executor);
+    }
+
+    private static QueryResponse join(CompletableFuture<QueryResponse> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
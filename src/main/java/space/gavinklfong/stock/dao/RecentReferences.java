@@ -0,0 +1,38 @@
+package space.gavinklfong.stock.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import space.gavinklfong.stock.model.StockTransaction;
+
+import java.time.Duration;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * References this process has recently written, so a retried save can be acknowledged without a round trip.
+ * Only a hint: a reference written by another instance, or evicted here, is still caught by the reference claim.
+ */
+final class RecentReferences {
+
+    private static final long MAXIMUM_SIZE = 100_000;
+    private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMinutes(10);
+
+    private final Cache<String, Boolean> references = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE)
+            .build();
+
+    boolean contains(StockTransaction transaction) {
+        return nonNull(transaction.getReference()) && nonNull(references.getIfPresent(toKey(transaction)));
+    }
+
+    void add(StockTransaction transaction) {
+        if (nonNull(transaction.getReference())) {
+            references.put(toKey(transaction), Boolean.TRUE);
+        }
+    }
+
+    private static String toKey(StockTransaction transaction) {
+        return transaction.getAccountNumber() + "#" + transaction.getReference();
+    }
+}
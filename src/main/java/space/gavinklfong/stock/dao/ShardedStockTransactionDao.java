@@ -0,0 +1,186 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static space.gavinklfong.stock.dao.StockTransactionBuckets.*;
+
+/**
+ * Stock transaction access for a write-sharded table, see {@link StockTransactionBuckets}. Spreading an account over
+ * several partitions lifts the per-partition write limit for accounts that trade heavily; reads query every shard of
+ * each day in the requested range in parallel and merge the results, newest first like {@link StockTransactionDao}.
+ * <p>
+ * Pages follow the usual contract: the next query key is the last transaction returned, and the following page
+ * starts right before its timestamp. The trade action index, positions and references are not maintained for a
+ * sharded table, all of them would concentrate a heavy account's writes on a single partition again.
+ * <p>
+ * A day without transactions still costs a query per shard, so a range is only walked back {@code maxLookback}
+ * from its end, and an account's history beyond that has to be asked for with a later end time.
+ * <p>
+ * The application's DAOs all work on an unsharded table and reject a sharded schema, so this DAO works on a table
+ * of its own, configured with {@code stock-transaction.sharded-table.name}.
+ */
+@Slf4j
+public class ShardedStockTransactionDao {
+
+    private static final Executor SHARD_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int FULL_RANGE_PAGE_SIZE = 1_000;
+    static final Duration DEFAULT_MAX_LOOKBACK = Duration.ofDays(366);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionQueries queries;
+    private final StockTransactionBuckets buckets;
+    private final StockTransactionDaoMetrics metrics;
+    private final Duration maxLookback;
+
+    public ShardedStockTransactionDao(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                                      StockTransactionDaoMetrics metrics) {
+        this(dynamoDbClient, stockTransactionSchema, metrics, DEFAULT_MAX_LOOKBACK);
+    }
+
+    public ShardedStockTransactionDao(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                                      StockTransactionDaoMetrics metrics, Duration maxLookback) {
+        if (!stockTransactionSchema.isSharded()) {
+            throw new IllegalArgumentException(stockTransactionSchema.getTableName() + " is not sharded");
+        }
+        if (isNull(maxLookback) || maxLookback.isNegative() || maxLookback.isZero()) {
+            throw new IllegalArgumentException("maxLookback must be positive: " + maxLookback);
+        }
+        this.dynamoDbClient = dynamoDbClient;
+        this.queries = new StockTransactionQueries(stockTransactionSchema);
+        this.buckets = new StockTransactionBuckets(stockTransactionSchema.getShardCount());
+        this.metrics = metrics;
+        this.maxLookback = maxLookback;
+    }
+
+    public void saveStockTransaction(StockTransaction transaction) {
+        StockTransactionDaoMetrics.Operation operation = metrics.start("saveStockTransaction", queries.tableName());
+        try {
+            PutItemResponse response = dynamoDbClient.putItem(queries.save(transaction,
+                    buckets.bucketOf(transaction.getAccountNumber(), transaction.getTimestamp())));
+            operation.recordWrite(1, response.consumedCapacity());
+            operation.stop();
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+
+    // oldest first, as StockTransactionDao returns the whole range
+    public List<StockTransaction> findStockTransactionByAccountNumberWithTimeRange(String accountNumber,
+                                                                                   Instant startTime,
+                                                                                   Instant endTime) {
+        List<StockTransaction> results = new ArrayList<>();
+        StockTransactionKey nextQueryKey = null;
+        do {
+            QueryResultPage<StockTransaction, StockTransactionKey> page = findStockTransactionByAccountNumberWithTimeRange(
+                    accountNumber, startTime, endTime, FULL_RANGE_PAGE_SIZE, nextQueryKey);
+            results.addAll(page.getResults());
+            nextQueryKey = page.getNextQueryKey();
+        } while (nonNull(nextQueryKey));
+        Collections.reverse(results);
+        return results;
+    }
+
+    // newest first, as StockTransactionDao pages the range, so a cursor means the same on either table
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberWithTimeRange(
+            String accountNumber, Instant startTime, Instant endTime, int pageSize, StockTransactionKey exclusiveStartKey) {
+
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start("findStockTransactionByAccountNumberWithTimeRange", queries.tableName());
+        try {
+            List<StockTransaction> results = new ArrayList<>(pageSize);
+            StockTransactionKey nextQueryKey = null;
+
+            // bounded by the end of the range, not of the page, so every page of a range stops at the same day
+            Instant earliest = endTime.minus(maxLookback);
+            Instant lowerBound = startTime.isAfter(earliest) ? startTime : earliest;
+
+            Instant to = isNull(exclusiveStartKey) || exclusiveStartKey.getTimestamp().isAfter(endTime)
+                    ? endTime
+                    : exclusiveStartKey.getTimestamp().minusNanos(1);
+            LocalDate day = dayOf(to);
+
+            while (!to.isBefore(lowerBound)) {
+                int remaining = pageSize - results.size();
+                Instant from = startOf(day).isAfter(lowerBound) ? startOf(day) : lowerBound;
+                List<QueryResponse> responses = queryShards(accountNumber, day, from, to, remaining, operation);
+
+                // a shard that stopped early has only been read down to its last key, earlier items may be in it
+                Instant readDownTo = responses.stream()
+                        .map(queries::toStockTransactionKey)
+                        .filter(Objects::nonNull)
+                        .map(StockTransactionKey::getTimestamp)
+                        .max(Comparator.naturalOrder())
+                        .orElse(null);
+
+                responses.stream()
+                        .flatMap(response -> queries.toStockTransactions(response).stream())
+                        .filter(transaction -> isNull(readDownTo) || !transaction.getTimestamp().isBefore(readDownTo))
+                        .sorted(Comparator.comparing(StockTransaction::getTimestamp).reversed())
+                        .limit(remaining)
+                        .forEach(results::add);
+
+                if (results.size() == pageSize) {
+                    nextQueryKey = toKey(results.get(pageSize - 1));
+                    break;
+                }
+                if (nonNull(readDownTo)) {
+                    nextQueryKey = StockTransactionKey.builder()
+                            .accountNumber(accountNumber)
+                            .timestamp(readDownTo)
+                            .build();
+                    break;
+                }
+
+                day = day.minusDays(1);
+                to = endOf(day);
+            }
+
+            operation.stop();
+            return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                    .results(results)
+                    .nextQueryKey(nextQueryKey)
+                    .build();
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+
+    private List<QueryResponse> queryShards(String accountNumber, LocalDate day, Instant from, Instant to, int limit,
+                                            StockTransactionDaoMetrics.Operation operation) {
+        List<CompletableFuture<QueryResponse>> futures = buckets.bucketsOf(accountNumber, day).stream()
+                .map(bucket -> CompletableFuture.supplyAsync(() -> operation.recordPage(
+                        dynamoDbClient.query(queries.byBucketWithTimeRange(bucket, from, to, limit))), SHARD_EXECUTOR))
+                .toList();
+
+        try {
+            return futures.stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static StockTransactionKey toKey(StockTransaction transaction) {
+        return StockTransactionKey.builder()
+                .accountNumber(transaction.getAccountNumber())
+                .timestamp(transaction.getTimestamp())
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.StockPosition;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads the per account and ticker positions that {@link StockTransactionDao} and {@link StockTransactionBatchWriter}
+ * keep up to date with every transaction written, so holdings do not have to be summed from the full history.
+ * Only available when a position table is configured.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "stock-transaction.table", name = "position-table-name")
+public class StockPositionDao {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionQueries queries;
+    private final StockTransactionDaoMetrics metrics;
+
+    public StockPositionDao(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                            StockTransactionDaoMetrics metrics) {
+        if (!stockTransactionSchema.hasPositionTable()) {
+            throw new IllegalArgumentException("no position table configured for " + stockTransactionSchema.getTableName());
+        }
+        this.dynamoDbClient = dynamoDbClient;
+        this.queries = new StockTransactionQueries(stockTransactionSchema);
+        this.metrics = metrics;
+    }
+
+    public Optional<StockPosition> findStockPosition(String accountNumber, String ticker) {
+        StockTransactionDaoMetrics.Operation operation = metrics.start("findStockPosition", queries.positionTableName());
+        try {
+            GetItemResponse response = dynamoDbClient.getItem(queries.positionByAccountNumberAndTicker(accountNumber, ticker));
+            operation.recordRead(response.hasItem() ? 1 : 0, response.consumedCapacity());
+            operation.stop();
+            return response.hasItem() && !response.item().isEmpty()
+                    ? Optional.of(queries.toStockPosition(response.item()))
+                    : Optional.empty();
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+
+    public List<StockPosition> findStockPositionsByAccountNumber(String accountNumber) {
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start("findStockPositionsByAccountNumber", queries.positionTableName());
+        try {
+            List<StockPosition> positions = dynamoDbClient.queryPaginator(queries.positionsByAccountNumber(accountNumber))
+                    .stream()
+                    .map(operation::recordPage)
+                    .flatMap(response -> queries.toStockPositions(response).stream())
+                    .toList();
+            operation.stop();
+            return positions;
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+@Slf4j
+@Service
+public class StockTransactionAsyncDao {
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final StockTransactionQueries queries;
+    private final StockTransactionDaoMetrics metrics;
+    private final StockTransactionWriteListeners writeListeners;
+    private final RecentReferences recentReferences = new RecentReferences();
+
+    public StockTransactionAsyncDao(DynamoDbAsyncClient dynamoDbAsyncClient, StockTransactionSchema stockTransactionSchema,
+                                    StockTransactionDaoMetrics metrics) {
+        this(dynamoDbAsyncClient, stockTransactionSchema, metrics, new StockTransactionWriteListeners());
+    }
+
+    @Autowired
+    public StockTransactionAsyncDao(DynamoDbAsyncClient dynamoDbAsyncClient, StockTransactionSchema stockTransactionSchema,
+                                    StockTransactionDaoMetrics metrics, StockTransactionWriteListeners writeListeners) {
+        if (stockTransactionSchema.isSharded()) {
+            throw new IllegalArgumentException(stockTransactionSchema.getTableName()
+                    + " is sharded, use ShardedStockTransactionDao");
+        }
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.queries = new StockTransactionQueries(stockTransactionSchema);
+        this.metrics = metrics;
+        this.writeListeners = writeListeners;
+    }
+
+    public CompletableFuture<Void> saveStockTransaction(StockTransaction transaction) {
+        StockTransactionDaoMetrics.Operation operation = metrics.start("saveStockTransaction", queries.tableName());
+        if (queries.claimsReferences() && recentReferences.contains(transaction)) {
+            operation.recordDuplicates(1);
+            operation.stop();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!queries.writesTransactionally()) {
+            return dynamoDbAsyncClient.putItem(queries.save(transaction))
+                    .whenComplete((response, error) -> {
+                        if (isNull(error)) {
+                            operation.recordWrite(1, response.consumedCapacity());
+                        }
+                        operation.stop(error);
+                        writeListeners.written(transaction);
+                    })
+                    .thenApply(response -> null);
+        }
+
+        List<StockTransaction> transactions = List.of(transaction);
+        return dynamoDbAsyncClient.transactWriteItems(queries.saveTransactionally(transactions))
+                .whenComplete((response, error) -> writeListeners.written(transaction))
+                .handle((response, error) -> {
+                    if (isNull(error)) {
+                        operation.recordWrite(1, response.consumedCapacity());
+                    } else if (unwrap(error) instanceof TransactionCanceledException e
+                            && !queries.duplicatesOf(transactions, e).isEmpty()) {
+                        operation.recordDuplicates(1);
+                    } else {
+                        operation.stop(error);
+                        throw error instanceof CompletionException completionException
+                                ? completionException
+                                : new CompletionException(error);
+                    }
+                    recentReferences.add(transaction);
+                    operation.stop();
+                    return null;
+                });
+    }
+
+    public CompletableFuture<List<StockTransaction>> findStockTransactionByAccountNumber(String accountNumber) {
+        return collect(publishStockTransactionByAccountNumber(accountNumber));
+    }
+
+    public SdkPublisher<StockTransaction> publishStockTransactionByAccountNumber(String accountNumber) {
+        return publishStockTransactions("publishStockTransactionByAccountNumber", queries.byAccountNumber(accountNumber));
+    }
+
+    public CompletableFuture<QueryResultPage<StockTransaction, StockTransactionKey>> findStockTransactionByAccountNumber(
+            String accountNumber, int pageSize, StockTransactionKey exclusiveStartKey) {
+        return query("findStockTransactionByAccountNumber", queries.byAccountNumber(accountNumber, pageSize, exclusiveStartKey))
+                .thenApply(queries::toQueryResultPage);
+    }
+
+    public CompletableFuture<QueryResultPage<StockTransaction, StockTransactionKey>> findStockTransactionByAccountNumberAndTradeAction(
+            String accountNumber, TradeAction tradeAction) {
+        return query("findStockTransactionByAccountNumberAndTradeAction",
+                queries.byAccountNumberAndTradeAction(accountNumber, tradeAction, 10, null))
+                .thenApply(queries::toQueryResultPage);
+    }
+
+    public CompletableFuture<List<StockTransaction>> findStockTransactionByAccountNumberWithTimeRange(String accountNumber,
+                                                                                                      Instant startTime,
+                                                                                                      Instant endTime) {
+        return collect(publishStockTransactionByAccountNumberWithTimeRange(accountNumber, startTime, endTime));
+    }
+
+    public SdkPublisher<StockTransaction> publishStockTransactionByAccountNumberWithTimeRange(String accountNumber,
+                                                                                             Instant startTime,
+                                                                                             Instant endTime) {
+        return publishStockTransactions("publishStockTransactionByAccountNumberWithTimeRange",
+                queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime));
+    }
+
+    public CompletableFuture<QueryResultPage<StockTransaction, StockTransactionKey>> findStockTransactionByAccountNumberAndTradeAction(
+            String accountNumber, TradeAction tradeAction, int pageSize, StockTransactionKey exclusiveStartKey) {
+        return query("findStockTransactionByAccountNumberAndTradeAction",
+                queries.byAccountNumberAndTradeAction(accountNumber, tradeAction, pageSize, exclusiveStartKey))
+                .thenApply(queries::toQueryResultPage);
+    }
+
+    private SdkPublisher<StockTransaction> publishStockTransactions(String operationName, QueryRequest queryRequest) {
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start(operationName, queryRequest.tableName(), queryRequest.indexName());
+
+        return dynamoDbAsyncClient.queryPaginator(queryRequest)
+                .map(operation::recordPage)
+                .doAfterOnComplete(operation::stop)
+                .doAfterOnError(operation::stop)
+                .doAfterOnCancel(operation::stop)
+                .flatMapIterable(QueryResponse::items)
+                .map(queries::toStockTransaction);
+    }
+
+    private CompletableFuture<QueryResponse> query(String operationName, QueryRequest queryRequest) {
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start(operationName, queryRequest.tableName(), queryRequest.indexName());
+
+        return dynamoDbAsyncClient.query(queryRequest)
+                .whenComplete((response, error) -> {
+                    if (isNull(error)) {
+                        operation.recordPage(response);
+                    }
+                    operation.stop(error);
+                });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && nonNull(error.getCause()) ? error.getCause() : error;
+    }
+
+    private static CompletableFuture<List<StockTransaction>> collect(SdkPublisher<StockTransaction> stockTransactions) {
+        List<StockTransaction> results = new ArrayList<>();
+        return stockTransactions.subscribe(results::add)
+                .thenApply(done -> Collections.unmodifiableList(results));
+    }
+}
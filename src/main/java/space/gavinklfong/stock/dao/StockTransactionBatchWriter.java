@@ -0,0 +1,260 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.util.Objects.nonNull;
+
+@Slf4j
+@Service
+public class StockTransactionBatchWriter {
+
+    static final int MAX_BATCH_SIZE = 25;
+    static final int DEFAULT_PARALLELISM = 8;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_BACKOFF_MILLIS = 25;
+    private static final long MAX_BACKOFF_MILLIS = 2_000;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+    private final StockTransactionStorageFormat format;
+    private final StockTransactionQueries queries;
+    private final StockTransactionDaoMetrics metrics;
+    private final StockTransactionWriteListeners writeListeners;
+    private final RecentReferences recentReferences = new RecentReferences();
+    // shared by every chunk in flight, so provisioned tables keep capacity for interactive writes; null on demand
+    private final CapacityRateLimiter writeLimiter;
+
+    public StockTransactionBatchWriter(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                                       StockTransactionDaoMetrics metrics) {
+        this(dynamoDbClient, stockTransactionSchema, metrics, new StockTransactionWriteListeners());
+    }
+
+    @Autowired
+    public StockTransactionBatchWriter(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                                       StockTransactionDaoMetrics metrics, StockTransactionWriteListeners writeListeners) {
+        if (stockTransactionSchema.isSharded()) {
+            throw new IllegalArgumentException(stockTransactionSchema.getTableName()
+                    + " is sharded, use ShardedStockTransactionDao");
+        }
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = stockTransactionSchema.getTableName();
+        this.format = stockTransactionSchema.getStorageFormat();
+        this.queries = new StockTransactionQueries(stockTransactionSchema);
+        this.metrics = metrics;
+        this.writeListeners = writeListeners;
+        this.writeLimiter = stockTransactionSchema.getCapacity().newBulkWriteLimiter();
+    }
+
+    public BatchWriteResult saveStockTransactions(Stream<StockTransaction> transactions) {
+        try (transactions) {
+            return saveStockTransactions(transactions.iterator(), DEFAULT_PARALLELISM);
+        }
+    }
+
+    public BatchWriteResult saveStockTransactions(Iterator<StockTransaction> transactions) {
+        return saveStockTransactions(transactions, DEFAULT_PARALLELISM);
+    }
+
+    public BatchWriteResult saveStockTransactions(Iterator<StockTransaction> transactions, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        // at most `parallelism` chunks are in flight, so the source is only pulled as fast as it is written
+        Semaphore inFlight = new Semaphore(parallelism);
+        AtomicLong writtenCount = new AtomicLong();
+        AtomicLong duplicateCount = new AtomicLong();
+        Queue<BatchWriteFailure> failures = new ConcurrentLinkedQueue<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (transactions.hasNext()) {
+                List<StockTransaction> chunk = nextChunk(transactions);
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        writeChunk(chunk, writtenCount, duplicateCount, failures);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        return BatchWriteResult.builder()
+                .writtenCount(writtenCount.get())
+                .duplicateCount(duplicateCount.get())
+                .failures(List.copyOf(failures))
+                .build();
+    }
+
+    private List<StockTransaction> nextChunk(Iterator<StockTransaction> transactions) {
+        List<StockTransaction> chunk = new ArrayList<>(MAX_BATCH_SIZE);
+        while (chunk.size() < MAX_BATCH_SIZE && transactions.hasNext()) {
+            chunk.add(transactions.next());
+        }
+        return chunk;
+    }
+
+    private void writeChunk(List<StockTransaction> chunk, AtomicLong writtenCount, AtomicLong duplicateCount,
+                            Queue<BatchWriteFailure> failures) {
+        // BatchWriteItem rejects a request containing the same key twice, the last write wins as it would with PutItem
+        Map<StockTransactionKey, StockTransaction> pending = new LinkedHashMap<>();
+        chunk.forEach(transaction -> pending.put(toKey(transaction), transaction));
+
+        StockTransactionDaoMetrics.Operation operation = metrics.start("saveStockTransactions", tableName);
+        if (queries.claimsReferences()) {
+            // a reference can only be claimed once per transaction, and one already written here needs no claim at all
+            Set<String> references = new HashSet<>();
+            int duplicates = 0;
+            for (Iterator<StockTransaction> it = pending.values().iterator(); it.hasNext(); ) {
+                StockTransaction transaction = it.next();
+                if (nonNull(transaction.getReference())
+                        && (recentReferences.contains(transaction)
+                        || !references.add(transaction.getAccountNumber() + "#" + transaction.getReference()))) {
+                    it.remove();
+                    duplicates++;
+                }
+            }
+            operation.recordDuplicates(duplicates);
+        }
+        duplicateCount.addAndGet(chunk.size() - pending.size());
+
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                if (attempt > 0) {
+                    Thread.sleep(backoffMillis(attempt));
+                }
+                if (nonNull(writeLimiter)) {
+                    writeLimiter.acquire();
+                }
+
+                if (queries.writesTransactionally()) {
+                    writeTransactionally(pending, writtenCount, duplicateCount, failures, operation);
+                    continue;
+                }
+
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(buildBatchWriteItemRequest(pending.values()));
+                consumeWriteCapacity(response.consumedCapacity());
+                List<WriteRequest> unprocessedItems = response.unprocessedItems().getOrDefault(tableName, List.of());
+
+                int requested = pending.size();
+                Map<StockTransactionKey, StockTransaction> remaining = new LinkedHashMap<>();
+                unprocessedItems.forEach(writeRequest -> {
+                    StockTransactionKey key = format.toStockTransactionKey(writeRequest.putRequest().item());
+                    remaining.put(key, pending.get(key));
+                });
+
+                writtenCount.addAndGet(requested - remaining.size());
+                operation.recordWrite(requested - remaining.size(), response.consumedCapacity());
+                pending.clear();
+                pending.putAll(remaining);
+            }
+
+            if (!pending.isEmpty()) {
+                reportFailures(pending.values(), "unprocessed after " + MAX_ATTEMPTS + " attempts", true, failures);
+            }
+            operation.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reportFailures(pending.values(), "interrupted", true, failures);
+            operation.stop(e);
+        } catch (SdkException e) {
+            reportFailures(pending.values(), e.getMessage(), true, failures);
+            operation.stop(e);
+        } catch (RuntimeException e) {
+            // not a DynamoDB failure, such as a transaction that cannot be mapped, which retrying will not fix
+            log.error("failed to write a chunk of {} stock transactions", pending.size(), e);
+            reportFailures(pending.values(), e.toString(), false, failures);
+            operation.stop(e);
+        } finally {
+            // the whole chunk, dropping a cached page that held a skipped duplicate only costs a reload
+            writeListeners.written(chunk);
+        }
+    }
+
+    // BatchWriteItem cannot be made conditional, so positions and references are kept in step by writing the chunk
+    // as one transaction
+    private void writeTransactionally(Map<StockTransactionKey, StockTransaction> pending, AtomicLong writtenCount,
+                                      AtomicLong duplicateCount, Queue<BatchWriteFailure> failures,
+                                      StockTransactionDaoMetrics.Operation operation) {
+        List<StockTransaction> transactions = List.copyOf(pending.values());
+        try {
+            TransactWriteItemsResponse response = dynamoDbClient.transactWriteItems(queries.saveTransactionally(transactions));
+            consumeWriteCapacity(response.consumedCapacity());
+            writtenCount.addAndGet(transactions.size());
+            operation.recordWrite(transactions.size(), response.consumedCapacity());
+            transactions.forEach(recentReferences::add);
+            pending.clear();
+        } catch (TransactionCanceledException e) {
+            // retried references were written before and are acknowledged, other transactions whose key is taken
+            // are dropped, anything else cancelled is retried with the rest
+            List<StockTransaction> duplicates = queries.duplicatesOf(transactions, e);
+            duplicates.forEach(transaction -> {
+                pending.remove(toKey(transaction));
+                recentReferences.add(transaction);
+            });
+            duplicateCount.addAndGet(duplicates.size());
+            operation.recordDuplicates(duplicates.size());
+
+            List<StockTransaction> conflicts = queries.conflictsOf(transactions, e);
+            conflicts.forEach(transaction -> pending.remove(toKey(transaction)));
+            if (!conflicts.isEmpty()) {
+                reportFailures(conflicts, "already exists", false, failures);
+            }
+        }
+    }
+
+    private void consumeWriteCapacity(List<ConsumedCapacity> consumedCapacities) {
+        if (nonNull(writeLimiter)) {
+            writeLimiter.consume(consumedCapacities);
+        }
+    }
+
+    private BatchWriteItemRequest buildBatchWriteItemRequest(Collection<StockTransaction> transactions) {
+        List<WriteRequest> writeRequests = transactions.stream()
+                .map(transaction -> WriteRequest.builder()
+                        .putRequest(PutRequest.builder()
+                                .item(format.toItem(transaction))
+                                .build())
+                        .build())
+                .toList();
+
+        return BatchWriteItemRequest.builder()
+                .requestItems(Map.of(tableName, writeRequests))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    private void reportFailures(Collection<StockTransaction> transactions, String reason, boolean retryable,
+                                Queue<BatchWriteFailure> failures) {
+        log.warn("failed to write {} stock transactions: {}", transactions.size(), reason);
+        transactions.forEach(transaction -> failures.add(BatchWriteFailure.builder()
+                .stockTransaction(transaction)
+                .reason(reason)
+                .retryable(retryable)
+                .build()));
+    }
+
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static StockTransactionKey toKey(StockTransaction transaction) {
+        return StockTransactionKey.builder()
+                .accountNumber(transaction.getAccountNumber())
+                .timestamp(transaction.getTimestamp())
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package space.gavinklfong.stock.dao;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Partition keys of a sharded table: {@code accountNumber#yyyy-MM-dd#shard}, the day being the UTC date of the
+ * transaction. The shard is derived from the timestamp, so a transaction always maps to the same partition and
+ * can be found again by key, while one account's writes within a day spread over {@code shardCount} partitions.
+ */
+final class StockTransactionBuckets {
+
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final int shardCount;
+
+    StockTransactionBuckets(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.shardCount = shardCount;
+    }
+
+    String bucketOf(String accountNumber, Instant timestamp) {
+        return bucket(accountNumber, dayOf(timestamp), shardOf(timestamp));
+    }
+
+    List<String> bucketsOf(String accountNumber, LocalDate day) {
+        List<String> buckets = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            buckets.add(bucket(accountNumber, day, shard));
+        }
+        return buckets;
+    }
+
+    int shardOf(Instant timestamp) {
+        long hash = StockTransactionStorageFormat.toEpochNanos(timestamp) * MIX;
+        return (int) Long.remainderUnsigned(hash >>> 32, shardCount);
+    }
+
+    static LocalDate dayOf(Instant timestamp) {
+        return LocalDate.ofInstant(timestamp, ZoneOffset.UTC);
+    }
+
+    static Instant startOf(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    static Instant endOf(LocalDate day) {
+        return startOf(day.plusDays(1)).minusNanos(1);
+    }
+
+    private static String bucket(String accountNumber, LocalDate day, int shard) {
+        return accountNumber + "#" + day + "#" + shard;
+    }
+}
@@ -0,0 +1,47 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.Builder;
+import lombok.Value;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughput;
+
+/**
+ * Capacity of the stock transaction tables. On demand, tables scale by themselves and bulk jobs run unpaced.
+ * Provisioned, the table, each of its indexes and the position and reference tables get the same read and write
+ * units, and bulk jobs pace themselves to {@code bulkShare} of them with a {@link CapacityRateLimiter}, leaving
+ * the rest to interactive requests. With auto scaling, the units are the minimum it scales down to.
+ */
+@Builder
+@Value
+public class StockTransactionCapacity {
+
+    public static final StockTransactionCapacity ON_DEMAND = StockTransactionCapacity.builder()
+            .billingMode(BillingMode.PAY_PER_REQUEST)
+            .build();
+
+    BillingMode billingMode;
+    long readCapacityUnits;
+    long writeCapacityUnits;
+    double bulkShare;
+
+    public boolean isProvisioned() {
+        return billingMode == BillingMode.PROVISIONED;
+    }
+
+    public ProvisionedThroughput toProvisionedThroughput() {
+        return ProvisionedThroughput.builder()
+                .readCapacityUnits(readCapacityUnits)
+                .writeCapacityUnits(writeCapacityUnits)
+                .build();
+    }
+
+    // null when bulk reads need no pacing
+    public CapacityRateLimiter newBulkReadLimiter() {
+        return isProvisioned() ? new CapacityRateLimiter(readCapacityUnits * bulkShare) : null;
+    }
+
+    // null when bulk writes need no pacing
+    public CapacityRateLimiter newBulkWriteLimiter() {
+        return isProvisioned() ? new CapacityRateLimiter(writeCapacityUnits * bulkShare) : null;
+    }
+}
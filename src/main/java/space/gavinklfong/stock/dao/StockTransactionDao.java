@@ -1,140 +1,262 @@
 package space.gavinklfong.stock.dao;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 import space.gavinklfong.stock.model.*;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.nonNull;
-import static space.gavinklfong.stock.dao.DynamoDBTableConstant.*;
+import static space.gavinklfong.stock.dao.StockTransactionQueries.toPage;
 
 @Slf4j
-@RequiredArgsConstructor
 @Service
 public class StockTransactionDao {
 
+    static final int DEFAULT_FETCH_PARALLELISM = 16;
+    static final int DEFAULT_FILTER_SCAN_BUDGET = 5_000;
+    static final Duration DEFAULT_FILTER_TIME_BUDGET = Duration.ofSeconds(2);
+    private static final int MAX_FILTER_LIMIT = 1_000;
+    private static final int FILTER_LIMIT_GROWTH = 4;
+
+    private static final Executor PREFETCH_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionQueries queries;
+    private final StockTransactionDaoMetrics metrics;
+    private final StockTransactionWriteListeners writeListeners;
+    private final RecentReferences recentReferences = new RecentReferences();
+
+    public StockTransactionDao(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                               StockTransactionDaoMetrics metrics) {
+        this(dynamoDbClient, stockTransactionSchema, metrics, new StockTransactionWriteListeners());
+    }
 
+    @Autowired
+    public StockTransactionDao(DynamoDbClient dynamoDbClient, StockTransactionSchema stockTransactionSchema,
+                               StockTransactionDaoMetrics metrics, StockTransactionWriteListeners writeListeners) {
+        if (stockTransactionSchema.isSharded()) {
+            throw new IllegalArgumentException(stockTransactionSchema.getTableName()
+                    + " is sharded, use ShardedStockTransactionDao");
+        }
+        this.dynamoDbClient = dynamoDbClient;
+        this.queries = new StockTransactionQueries(stockTransactionSchema);
+        this.metrics = metrics;
+        this.writeListeners = writeListeners;
+    }
+
+    /**
+     * Saves the transaction. When references are claimed, saving a transaction whose reference was already written
+     * is acknowledged without writing it again.
+     */
     public void saveStockTransaction(StockTransaction transaction) {
-        PutItemRequest putRequest = PutItemRequest.builder()
-                .item(transaction.toAttributeValues())
-                .tableName(TABLE_NAME)
-                .build();
+        StockTransactionDaoMetrics.Operation operation = metrics.start("saveStockTransaction", queries.tableName());
+        if (queries.claimsReferences() && recentReferences.contains(transaction)) {
+            operation.recordDuplicates(1);
+            operation.stop();
+            return;
+        }
 
-        dynamoDbClient.putItem(putRequest);
+        try {
+            if (queries.writesTransactionally()) {
+                List<StockTransaction> transactions = List.of(transaction);
+                try {
+                    TransactWriteItemsResponse response =
+                            dynamoDbClient.transactWriteItems(queries.saveTransactionally(transactions));
+                    operation.recordWrite(1, response.consumedCapacity());
+                } catch (TransactionCanceledException e) {
+                    if (queries.duplicatesOf(transactions, e).isEmpty()) {
+                        throw e;
+                    }
+                    operation.recordDuplicates(1);
+                }
+                recentReferences.add(transaction);
+            } else {
+                PutItemResponse response = dynamoDbClient.putItem(queries.save(transaction));
+                operation.recordWrite(1, response.consumedCapacity());
+            }
+            operation.stop();
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        } finally {
+            writeListeners.written(transaction);
+        }
     }
 
     public List<StockTransaction> findStockTransactionByAccountNumber(String accountNumber) {
-        Map<String, AttributeValue> attrValues = Map.of(
-                ":accountNumber", AttributeValue.builder().s(accountNumber).build()
-        );
-
-        QueryRequest queryReq = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("accountNumber = :accountNumber")
-                .expressionAttributeValues(attrValues)
-                .build();
-
-        QueryResponse response = dynamoDbClient.query(queryReq);
+        try (Stream<StockTransaction> stockTransactions = streamStockTransactionByAccountNumber(accountNumber)) {
+            return stockTransactions.toList();
+        }
+    }
 
-        return response.items().stream()
-                .map(StockTransaction::toStockTransaction)
-                .toList();
+    public Stream<StockTransaction> streamStockTransactionByAccountNumber(String accountNumber) {
+        return streamStockTransactions("streamStockTransactionByAccountNumber", queries.byAccountNumber(accountNumber));
     }
 
     public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumber(String accountNumber, int pageSize,
                                                                                                       StockTransactionKey exclusiveStartKey) {
-        Map<String, AttributeValue> attrValues = Map.of(
-                ":accountNumber", AttributeValue.builder().s(accountNumber).build()
-        );
-
-        Map<String, AttributeValue> exclusiveStartKeyAttrValues = null;
-
-        if (nonNull(exclusiveStartKey)) {
-            exclusiveStartKeyAttrValues = Map.of(
-                    "accountNumber", AttributeValue.builder().s(exclusiveStartKey.getAccountNumber()).build(),
-                    "timestamp", AttributeValue.builder().s(exclusiveStartKey.getTimestampFormatted()).build()
-            );
-        }
-
-        QueryRequest queryReq = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("accountNumber = :accountNumber")
-                .expressionAttributeValues(attrValues)
-                .exclusiveStartKey(exclusiveStartKeyAttrValues)
-                .limit(pageSize)
-                .build();
-
-        QueryResponse response = dynamoDbClient.query(queryReq);
-        return QueryResultPage
-                .<StockTransaction, StockTransactionKey>builder()
-                .results(response.items().stream()
-                        .map(StockTransaction::toStockTransaction)
-                        .toList())
-                .nextQueryKey(mapToStockTransactionKey(response))
-                .build();
+        QueryResponse response = query("findStockTransactionByAccountNumber",
+                queries.byAccountNumber(accountNumber, pageSize, exclusiveStartKey));
+        return queries.toQueryResultPage(response);
     }
 
 
     public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberAndTradeAction(
             String accountNumber, TradeAction tradeAction) {
 
-        Map<String, AttributeValue> attrValues = Map.of(
-                ":accountNumber", AttributeValue.builder().s(accountNumber).build(),
-                ":tradeAction", AttributeValue.builder().s(tradeAction.name()).build()
-        );
+        QueryResponse response = query("findStockTransactionByAccountNumberAndTradeAction",
+                queries.byAccountNumberAndTradeAction(accountNumber, tradeAction, 10, null));
+        return queries.toQueryResultPage(response);
+    }
 
-        QueryRequest queryReq = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("accountNumber = :accountNumber")
-                .filterExpression("tradeAction = :tradeAction")
-                .expressionAttributeValues(attrValues)
-                .limit(10)
-                .build();
+    public QueryResultPage<StockTransactionSummary, StockTransactionKey> findStockTransactionSummaryByAccountNumber(
+            String accountNumber, int pageSize, StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionSummaryByAccountNumber",
+                queries.withSummaryProjection(queries.byAccountNumber(accountNumber, pageSize, exclusiveStartKey)));
+        return queries.toSummaryPage(response);
+    }
 
-        QueryResponse response = dynamoDbClient.query(queryReq);
-        return QueryResultPage
-                .<StockTransaction, StockTransactionKey>builder()
-                .results(response.items().stream()
-                        .map(StockTransaction::toStockTransaction)
-                        .toList())
-                .nextQueryKey(mapToStockTransactionKey(response))
-                .build();
+    public QueryResultPage<StockTransactionSummary, StockTransactionKey> findStockTransactionSummaryByAccountNumberWithTimeRange(
+            String accountNumber, Instant startTime, Instant endTime, int pageSize, StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionSummaryByAccountNumberWithTimeRange",
+                queries.withSummaryProjection(queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime, pageSize, exclusiveStartKey)));
+        return queries.toSummaryPage(response);
     }
 
-    private StockTransactionKey mapToStockTransactionKey(QueryResponse queryResponse) {
-        return queryResponse.hasLastEvaluatedKey()
-                ? StockTransactionKey.toStockTransactionKey(queryResponse.lastEvaluatedKey())
-                : null;
+    public QueryResultPage<StockTransactionSummary, StockTransactionKey> findStockTransactionSummaryByAccountNumberAndTradeAction(
+            String accountNumber, TradeAction tradeAction, int pageSize, StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionSummaryByAccountNumberAndTradeAction",
+                queries.withSummaryProjection(queries.byAccountNumberAndTradeAction(accountNumber, tradeAction, pageSize, exclusiveStartKey)));
+        return queries.toSummaryPage(response);
     }
 
     public List<StockTransaction> findStockTransactionByAccountNumberWithTimeRange(String accountNumber,
                                                                                    Instant startTime,
                                                                                    Instant endTime) {
-        Map<String, AttributeValue> attrValues = Map.of(
-                ":accountNumber", AttributeValue.builder().s(accountNumber).build(),
-                ":startTime", AttributeValue.builder().s(DateTimeFormatter.ISO_INSTANT.format(startTime)).build(),
-                ":endTime", AttributeValue.builder().s(DateTimeFormatter.ISO_INSTANT.format(endTime)).build()
-        );
+        try (Stream<StockTransaction> stockTransactions =
+                     streamStockTransactionByAccountNumberWithTimeRange(accountNumber, startTime, endTime)) {
+            return stockTransactions.toList();
+        }
+    }
+
+    public Stream<StockTransaction> streamStockTransactionByAccountNumberWithTimeRange(String accountNumber,
+                                                                                       Instant startTime,
+                                                                                       Instant endTime) {
+        return streamStockTransactions("streamStockTransactionByAccountNumberWithTimeRange",
+                queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime));
+    }
+
+    /**
+     * Transactions within the time range, oldest first, one list per page as DynamoDB returns them, so callers can
+     * hand each page on before the next one is read.
+     */
+    public Stream<List<StockTransaction>> streamStockTransactionPagesByAccountNumberWithTimeRange(String accountNumber,
+                                                                                                Instant startTime,
+                                                                                                Instant endTime) {
+        return streamQueryPages("streamStockTransactionPagesByAccountNumberWithTimeRange",
+                queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime))
+                .map(queries::toStockTransactions);
+    }
+
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberWithTimeRange(
+            String accountNumber, Instant startTime, Instant endTime, int pageSize, StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionByAccountNumberWithTimeRange",
+                queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime, pageSize, exclusiveStartKey));
+        return queries.toQueryResultPage(response);
+    }
 
-        QueryRequest queryReq = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("accountNumber = :accountNumber AND #timestamp BETWEEN :startTime AND :endTime")
-                .expressionAttributeNames(Map.of("#timestamp", "timestamp"))
-                .expressionAttributeValues(attrValues)
-                .build();
+    /**
+     * A page of all accounts' transactions in the ticker within the time range, oldest first, read from the ticker
+     * index, which the schema has to opt in to. The next query key continues after the last transaction of the page.
+     */
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByTickerWithTimeRange(
+            String ticker, Instant startTime, Instant endTime, int pageSize, StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionByTickerWithTimeRange",
+                queries.byTickerWithTimeRange(ticker, startTime, endTime, pageSize, exclusiveStartKey));
+        return queries.toQueryResultPage(response);
+    }
+
+    public Map<String, QueryResultPage<StockTransaction, StockTransactionKey>> findStockTransactionsByAccountNumbers(
+            Collection<String> accountNumbers, int pageSize, Instant startTime, Instant endTime) {
+        return findStockTransactionsByAccountNumbers(accountNumbers, pageSize, startTime, endTime, DEFAULT_FETCH_PARALLELISM);
+    }
+
+    /**
+     * Fetches the latest page of transactions within the time range for each account, running at most
+     * {@code parallelism} queries at a time. The result keeps the order of the given account numbers.
+     */
+    public Map<String, QueryResultPage<StockTransaction, StockTransactionKey>> findStockTransactionsByAccountNumbers(
+            Collection<String> accountNumbers, int pageSize, Instant startTime, Instant endTime, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        Semaphore inFlight = new Semaphore(parallelism);
+        Map<String, CompletableFuture<QueryResultPage<StockTransaction, StockTransactionKey>>> futures = new LinkedHashMap<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String accountNumber : new LinkedHashSet<>(accountNumbers)) {
+                futures.put(accountNumber, CompletableFuture.supplyAsync(() -> {
+                    inFlight.acquireUninterruptibly();
+                    try {
+                        return queries.toQueryResultPage(query("findStockTransactionsByAccountNumbers",
+                                queries.byAccountNumberWithTimeRange(accountNumber, startTime, endTime, pageSize, null)));
+                    } finally {
+                        inFlight.release();
+                    }
+                }, executor));
+            }
+        }
 
-        QueryResponse response = dynamoDbClient.query(queryReq);
+        Map<String, QueryResultPage<StockTransaction, StockTransactionKey>> results = new LinkedHashMap<>();
+        futures.forEach((accountNumber, future) -> {
+            try {
+                results.put(accountNumber, future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        });
+        return results;
+    }
+
+    private Stream<StockTransaction> streamStockTransactions(String operationName, QueryRequest queryRequest) {
+        return streamQueryPages(operationName, queryRequest)
+                .flatMap(response -> response.items().stream())
+                .map(queries::toStockTransaction);
+    }
 
-        return response.items().stream()
-                .map(StockTransaction::toStockTransaction)
-                .toList();
+    Stream<QueryResponse> streamQueryPages(String operationName, QueryRequest queryRequest) {
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start(operationName, queryRequest.tableName(), queryRequest.indexName());
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            try {
+                QueryResponse response = operation.recordPage(dynamoDbClient.query(queryRequest.toBuilder()
+                        .exclusiveStartKey(exclusiveStartKey)
+                        .build()));
+                if (!response.hasLastEvaluatedKey()) {
+                    operation.stop();
+                }
+                return response;
+            } catch (RuntimeException e) {
+                operation.stop(e);
+                throw e;
+            }
+        }, PREFETCH_EXECUTOR);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close)
+                .onClose(operation::stop);
     }
 
 
@@ -142,71 +264,129 @@ public class StockTransactionDao {
                                                                                                       TradeAction tradeAction,
                                                                                                       int pageSize,
                                                                                                       StockTransactionKey exclusiveStartKey) {
+        QueryResponse response = query("findStockTransactionByAccountNumberAndTradeAction",
+                queries.byAccountNumberAndTradeAction(accountNumber, tradeAction, pageSize, exclusiveStartKey));
+        return queries.toQueryResultPage(response);
+    }
 
-        List<StockTransaction> results = new ArrayList<>();
-
-        QueryResultPage<StockTransaction, StockTransactionKey> queryResultPage;
-        StockTransactionKey nextQueryKey = exclusiveStartKey;
-        do {
-            queryResultPage =
-                    doFindStockTransactionByAccountNumberAndTradeAction(accountNumber, tradeAction, pageSize, nextQueryKey);
-            results.addAll(queryResultPage.getResults());
-            nextQueryKey = queryResultPage.getNextQueryKey();
-        } while (results.size() < pageSize && nonNull(nextQueryKey));
-
-        if (results.size() > pageSize) {
-            StockTransaction lastItem = results.get(pageSize - 1);
-
-            return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
-                    .results(results.subList(0, pageSize))
-                    .nextQueryKey(StockTransactionKey.builder()
-                    .accountNumber(lastItem.getAccountNumber())
-                    .timestamp(lastItem.getTimestamp())
-                    .build())
-                    .build();
-        } else {
-            return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
-                    .results(results)
-                    .nextQueryKey(queryResultPage.getNextQueryKey())
-                    .build();
+    // Filters on the base table, for items written before the accountNumberTradeAction index attribute was introduced
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberAndTradeActionWithFilter(String accountNumber,
+                                                                                                      TradeAction tradeAction,
+                                                                                                      int pageSize,
+                                                                                                      StockTransactionKey exclusiveStartKey) {
+        return findStockTransactionByAccountNumberAndTradeActionWithFilter(accountNumber, tradeAction, pageSize, exclusiveStartKey,
+                DEFAULT_FILTER_SCAN_BUDGET, DEFAULT_FILTER_TIME_BUDGET);
+    }
+
+    /**
+     * Sizes each request from the match ratio observed so far, so a sparse trade action takes a few large requests
+     * instead of many of {@code pageSize}. Stops once {@code scanBudget} items were evaluated or {@code timeBudget}
+     * elapsed, returning a partial page whose next query key continues where the scan stopped.
+     */
+    QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactionByAccountNumberAndTradeActionWithFilter(String accountNumber,
+                                                                                               TradeAction tradeAction,
+                                                                                               int pageSize,
+                                                                                               StockTransactionKey exclusiveStartKey,
+                                                                                               int scanBudget,
+                                                                                               Duration timeBudget) {
+        return findWithFilter("findStockTransactionByAccountNumberAndTradeActionWithFilter", accountNumber,
+                (limit, nextQueryKey) -> queries.byAccountNumberWithTradeActionFilter(accountNumber, tradeAction, limit, nextQueryKey),
+                pageSize, exclusiveStartKey, scanBudget, timeBudget);
+    }
+
+    /**
+     * A page of the account's transactions matching the criteria. Without a ticker this is a single query reading
+     * only the items returned, so the latest N transactions of a range, newest first, take N items whatever the
+     * size of the range. With a ticker the query filters, and is sized and bounded like
+     * {@link #findStockTransactionByAccountNumberAndTradeActionWithFilter}.
+     */
+    public QueryResultPage<StockTransaction, StockTransactionKey> findStockTransactions(StockTransactionCriteria criteria) {
+        if (criteria.getPageSize() < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + criteria.getPageSize());
         }
+        if (nonNull(criteria.getTicker())) {
+            return findWithFilter("findStockTransactions", criteria.getAccountNumber(),
+                    (limit, nextQueryKey) -> queries.byCriteria(criteria, limit, nextQueryKey),
+                    criteria.getPageSize(), criteria.getExclusiveStartKey(), DEFAULT_FILTER_SCAN_BUDGET, DEFAULT_FILTER_TIME_BUDGET);
+        }
+        QueryResponse response = query("findStockTransactions",
+                queries.byCriteria(criteria, criteria.getPageSize(), criteria.getExclusiveStartKey()));
+        return queries.toQueryResultPage(response);
+    }
 
+    private QueryResultPage<StockTransaction, StockTransactionKey> findWithFilter(String operationName,
+                                                                                  String accountNumber,
+                                                                                  BiFunction<Integer, StockTransactionKey, QueryRequest> requests,
+                                                                                  int pageSize,
+                                                                                  StockTransactionKey exclusiveStartKey,
+                                                                                  int scanBudget,
+                                                                                  Duration timeBudget) {
+        QueryRequest firstRequest = requests.apply(Math.min(pageSize, scanBudget), exclusiveStartKey);
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start(operationName, firstRequest.tableName(), firstRequest.indexName());
+        try {
+            long deadline = System.nanoTime() + timeBudget.toNanos();
+            List<StockTransaction> results = new ArrayList<>();
+            long scannedCount = 0;
+            int roundTrips = 0;
+
+            StockTransactionKey nextQueryKey = exclusiveStartKey;
+            int limit = Math.min(pageSize, scanBudget);
+            QueryRequest request = firstRequest;
+            do {
+                QueryResponse response = operation.recordPage(dynamoDbClient.query(request));
+                roundTrips++;
+                results.addAll(queries.toStockTransactions(response));
+                scannedCount += response.scannedCount();
+                nextQueryKey = queries.toStockTransactionKey(response);
+
+                limit = nextLimit(pageSize - results.size(), results.size(), scannedCount, limit,
+                        scanBudget - scannedCount);
+                request = limit > 0 ? requests.apply(limit, nextQueryKey) : null;
+            } while (results.size() < pageSize && nonNull(nextQueryKey)
+                    && limit > 0 && System.nanoTime() < deadline);
+
+            log.debug("{} for {} took {} round trips, {} of {} scanned items matched",
+                    operationName, accountNumber, roundTrips, results.size(), scannedCount);
+            operation.stop();
+            return toPage(results, pageSize, nextQueryKey);
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+
+    // the next request is sized to the items expected to yield the remaining matches, and grows geometrically
+    // while nothing has matched yet
+    static int nextLimit(int remaining, long matchedCount, long scannedCount, int previousLimit, long scanBudgetLeft) {
+        if (remaining <= 0 || scanBudgetLeft <= 0) {
+            return 0;
+        }
+        long limit = matchedCount == 0
+                ? (long) previousLimit * FILTER_LIMIT_GROWTH
+                : (remaining * scannedCount + matchedCount - 1) / matchedCount;
+        return (int) Math.max(1, Math.min(Math.min(limit, MAX_FILTER_LIMIT), scanBudgetLeft));
     }
 
     public QueryResultPage<StockTransaction, StockTransactionKey> doFindStockTransactionByAccountNumberAndTradeAction(String accountNumber,
                                                                                    TradeAction tradeAction,
                                                                                    int pageSize,
                                                                                    StockTransactionKey exclusiveStartKey) {
-        Map<String, AttributeValue> attrValues = Map.of(
-                ":accountNumber", AttributeValue.builder().s(accountNumber).build(),
-                ":tradeAction", AttributeValue.builder().s(tradeAction.name()).build()
-        );
-
-        Map<String, AttributeValue> exclusiveStartKeyAttrValues = null;
-        if (nonNull(exclusiveStartKey)) {
-            exclusiveStartKeyAttrValues = Map.of(
-                    "accountNumber", AttributeValue.builder().s(exclusiveStartKey.getAccountNumber()).build(),
-                    "timestamp", AttributeValue.builder().s(exclusiveStartKey.getTimestampFormatted()).build()
-            );
-        }
+        QueryResponse response = query("doFindStockTransactionByAccountNumberAndTradeAction",
+                queries.byAccountNumberWithTradeActionFilter(accountNumber, tradeAction, pageSize, exclusiveStartKey));
+        return queries.toQueryResultPage(response);
+    }
 
-        QueryRequest queryReq = QueryRequest.builder()
-                .tableName(TABLE_NAME)
-                .keyConditionExpression("accountNumber = :accountNumber")
-                .filterExpression("tradeAction = :tradeAction")
-                .expressionAttributeValues(attrValues)
-                .exclusiveStartKey(exclusiveStartKeyAttrValues)
-                .limit(pageSize)
-                .build();
-
-        QueryResponse response = dynamoDbClient.query(queryReq);
-
-        return QueryResultPage
-                .<StockTransaction, StockTransactionKey>builder()
-                .results(response.items().stream()
-                        .map(StockTransaction::toStockTransaction)
-                        .toList())
-                .nextQueryKey(mapToStockTransactionKey(response))
-                .build();
+    private QueryResponse query(String operationName, QueryRequest queryRequest) {
+        StockTransactionDaoMetrics.Operation operation =
+                metrics.start(operationName, queryRequest.tableName(), queryRequest.indexName());
+        try {
+            QueryResponse response = operation.recordPage(dynamoDbClient.query(queryRequest));
+            operation.stop();
+            return response;
+        } catch (RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
     }
 }
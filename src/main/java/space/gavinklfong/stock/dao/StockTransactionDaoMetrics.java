@@ -0,0 +1,126 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Micrometer meters for DAO operations. A logical operation may issue several requests (pages),
+ * each request adds its item counts and consumed capacity, and the operation records its latency and
+ * page count when it completes.
+ */
+@Component
+public class StockTransactionDaoMetrics {
+
+    static final String OPERATION_TIMER = "stock.transaction.dao.operation";
+    static final String PAGES_SUMMARY = "stock.transaction.dao.pages";
+    static final String RETURNED_ITEMS_COUNTER = "stock.transaction.dao.items.returned";
+    static final String SCANNED_ITEMS_COUNTER = "stock.transaction.dao.items.scanned";
+    static final String WRITTEN_ITEMS_COUNTER = "stock.transaction.dao.items.written";
+    static final String DUPLICATE_ITEMS_COUNTER = "stock.transaction.dao.items.duplicate";
+    static final String CONSUMED_CAPACITY_COUNTER = "stock.transaction.dao.consumed.capacity";
+
+    private static final String NO_INDEX = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public StockTransactionDaoMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Operation start(String operation, String tableName) {
+        return start(operation, tableName, null);
+    }
+
+    public Operation start(String operation, String tableName, String indexName) {
+        return new Operation(Tags.of(
+                "operation", operation,
+                "table", tableName,
+                "index", isNull(indexName) ? NO_INDEX : indexName));
+    }
+
+    public class Operation {
+
+        private final Tags tags;
+        private final Timer.Sample sample;
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private Operation(Tags tags) {
+            this.tags = tags;
+            this.sample = Timer.start(meterRegistry);
+        }
+
+        public QueryResponse recordPage(QueryResponse response) {
+            recordPage(response.count(), response.scannedCount(), response.consumedCapacity());
+            return response;
+        }
+
+        public ScanResponse recordPage(ScanResponse response) {
+            recordPage(response.count(), response.scannedCount(), response.consumedCapacity());
+            return response;
+        }
+
+        public void recordRead(int returnedItems, ConsumedCapacity consumedCapacity) {
+            recordPage(returnedItems, null, consumedCapacity);
+        }
+
+        public void recordWrite(int writtenItems, ConsumedCapacity consumedCapacity) {
+            recordWrite(writtenItems, nonNull(consumedCapacity) ? List.of(consumedCapacity) : List.of());
+        }
+
+        public void recordWrite(int writtenItems, List<ConsumedCapacity> consumedCapacities) {
+            pages.incrementAndGet();
+            meterRegistry.counter(WRITTEN_ITEMS_COUNTER, tags).increment(writtenItems);
+            consumedCapacities.forEach(this::recordConsumedCapacity);
+        }
+
+        public void recordDuplicates(int duplicateItems) {
+            meterRegistry.counter(DUPLICATE_ITEMS_COUNTER, tags).increment(duplicateItems);
+        }
+
+        public void stop() {
+            stop(null);
+        }
+
+        public void stop(Throwable error) {
+            if (!stopped.compareAndSet(false, true)) {
+                return;
+            }
+            Tags outcomeTags = tags.and("outcome", isNull(error) ? "success" : "error");
+            sample.stop(Timer.builder(OPERATION_TIMER)
+                    .tags(outcomeTags)
+                    .register(meterRegistry));
+            DistributionSummary.builder(PAGES_SUMMARY)
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(pages.get());
+        }
+
+        private void recordPage(Integer count, Integer scannedCount, ConsumedCapacity consumedCapacity) {
+            pages.incrementAndGet();
+            if (nonNull(count)) {
+                meterRegistry.counter(RETURNED_ITEMS_COUNTER, tags).increment(count);
+            }
+            if (nonNull(scannedCount)) {
+                meterRegistry.counter(SCANNED_ITEMS_COUNTER, tags).increment(scannedCount);
+            }
+            recordConsumedCapacity(consumedCapacity);
+        }
+
+        private void recordConsumedCapacity(ConsumedCapacity consumedCapacity) {
+            if (nonNull(consumedCapacity) && nonNull(consumedCapacity.capacityUnits())) {
+                meterRegistry.counter(CONSUMED_CAPACITY_COUNTER, tags).increment(consumedCapacity.capacityUnits());
+            }
+        }
+    }
+}
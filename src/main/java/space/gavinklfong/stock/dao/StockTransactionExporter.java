@@ -0,0 +1,223 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVPrinter;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.ExportResult;
+import space.gavinklfong.stock.util.StockTransactionCsv;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Dumps a whole stock transaction table with a parallel segmented Scan, one worker and one gzipped CSV file
+ * ({@link StockTransactionCsv}) per segment, paced by a shared {@link CapacityRateLimiter}. Unless given one, the
+ * export is paced to the bulk share of the source's provisioned read capacity, and not at all on demand.
+ * <p>
+ * Each scanned page is appended to the segment file as a gzip member of its own, after which a checkpoint with
+ * the file length and the scan position is written next to it. Exporting again into the same directory resumes
+ * every segment from its checkpoint, dropping whatever an interrupted run wrote after it, and skips segments
+ * that are complete. Concatenated members read back as one stream with {@link java.util.zip.GZIPInputStream}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockTransactionExporter {
+
+    private static final String FILE_SUFFIX = ".csv.gz";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionDaoMetrics metrics;
+
+    public ExportResult export(StockTransactionSchema source, Path directory, int segments) throws IOException {
+        return export(source, directory, segments, source.getCapacity().newBulkReadLimiter());
+    }
+
+    public ExportResult export(StockTransactionSchema source, Path directory, int segments,
+                               CapacityRateLimiter rateLimiter) throws IOException {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments must be positive: " + segments);
+        }
+        Files.createDirectories(directory);
+
+        List<Path> files = new ArrayList<>(segments);
+        List<Future<Long>> counts = new ArrayList<>(segments);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int segment = 0; segment < segments; segment++) {
+                Path file = directory.resolve(source.getTableName() + "-" + segment + "-of-" + segments + FILE_SUFFIX);
+                int currentSegment = segment;
+                files.add(file);
+                counts.add(executor.submit(() -> exportSegment(source, file, currentSegment, segments, rateLimiter)));
+            }
+
+            long exportedCount = 0;
+            for (Future<Long> count : counts) {
+                exportedCount += count.get();
+            }
+
+            log.info("exported {} stock transactions from {} into {} files", exportedCount, source.getTableName(), segments);
+            return ExportResult.builder()
+                    .exportedCount(exportedCount)
+                    .files(files)
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export of " + source.getTableName() + " interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private long exportSegment(StockTransactionSchema source, Path file, int segment, int totalSegments,
+                               CapacityRateLimiter rateLimiter) throws IOException, InterruptedException {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        SegmentCheckpoint checkpoint = SegmentCheckpoint.read(checkpointFile);
+        if (checkpoint.done()) {
+            return checkpoint.count();
+        }
+
+        StockTransactionDaoMetrics.Operation operation = metrics.start("export", source.getTableName());
+        try (FileChannel channel = FileChannel.open(file, CREATE, WRITE)) {
+            // anything after the checkpoint was written by an interrupted run and is scanned again
+            channel.truncate(checkpoint.length());
+            channel.position(checkpoint.length());
+
+            do {
+                if (nonNull(rateLimiter)) {
+                    rateLimiter.acquire();
+                }
+                ScanResponse response = operation.recordPage(dynamoDbClient.scan(ScanRequest.builder()
+                        .tableName(source.getTableName())
+                        .segment(segment)
+                        .totalSegments(totalSegments)
+                        .exclusiveStartKey(checkpoint.lastEvaluatedKey())
+                        .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                        .build()));
+                if (nonNull(rateLimiter)) {
+                    rateLimiter.consume(response.consumedCapacity());
+                }
+
+                channel.write(ByteBuffer.wrap(toGzipMember(response.items(), source.getStorageFormat(), channel.size() == 0)));
+                channel.force(false);
+
+                Map<String, AttributeValue> lastEvaluatedKey = response.hasLastEvaluatedKey()
+                        && !response.lastEvaluatedKey().isEmpty() ? response.lastEvaluatedKey() : null;
+                checkpoint = new SegmentCheckpoint(channel.size(), checkpoint.count() + response.items().size(),
+                        lastEvaluatedKey, isNull(lastEvaluatedKey));
+                checkpoint.write(checkpointFile);
+            } while (!checkpoint.done());
+
+            operation.stop();
+            return checkpoint.count();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            operation.stop(e);
+            throw e;
+        }
+    }
+
+    private static byte[] toGzipMember(List<Map<String, AttributeValue>> items, StockTransactionStorageFormat format,
+                                       boolean withHeader) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8),
+                StockTransactionCsv.WRITE_FORMAT)) {
+            if (withHeader) {
+                StockTransactionCsv.printHeader(printer);
+            }
+            for (Map<String, AttributeValue> item : items) {
+                StockTransactionCsv.printRecord(printer, format.toStockTransaction(item));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private record SegmentCheckpoint(long length, long count, Map<String, AttributeValue> lastEvaluatedKey,
+                                     boolean done) {
+
+        private static final String LENGTH = "length";
+        private static final String COUNT = "count";
+        private static final String DONE = "done";
+        private static final String KEY_PREFIX = "key.";
+
+        static SegmentCheckpoint read(Path file) throws IOException {
+            if (!Files.exists(file)) {
+                return new SegmentCheckpoint(0, 0, null, false);
+            }
+
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+
+            Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(KEY_PREFIX)) {
+                    lastEvaluatedKey.put(name.substring(KEY_PREFIX.length()), toAttributeValue(properties.getProperty(name)));
+                }
+            }
+            return new SegmentCheckpoint(
+                    Long.parseLong(properties.getProperty(LENGTH)),
+                    Long.parseLong(properties.getProperty(COUNT)),
+                    lastEvaluatedKey.isEmpty() ? null : lastEvaluatedKey,
+                    Boolean.parseBoolean(properties.getProperty(DONE)));
+        }
+
+        void write(Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty(LENGTH, Long.toString(length));
+            properties.setProperty(COUNT, Long.toString(count));
+            properties.setProperty(DONE, Boolean.toString(done));
+            if (nonNull(lastEvaluatedKey)) {
+                lastEvaluatedKey.forEach((name, value) -> properties.setProperty(KEY_PREFIX + name, toText(value)));
+            }
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+
+        // table keys are strings or numbers in every storage format
+        private static String toText(AttributeValue value) {
+            if (nonNull(value.s())) {
+                return "S:" + value.s();
+            }
+            if (nonNull(value.n())) {
+                return "N:" + value.n();
+            }
+            throw new IllegalStateException("unsupported key attribute: " + value);
+        }
+
+        private static AttributeValue toAttributeValue(String text) {
+            return switch (text.substring(0, 2)) {
+                case "S:" -> AttributeValue.fromS(text.substring(2));
+                case "N:" -> AttributeValue.fromN(text.substring(2));
+                default -> throw new IllegalStateException("malformed key attribute in checkpoint: " + text);
+            };
+        }
+    }
+}
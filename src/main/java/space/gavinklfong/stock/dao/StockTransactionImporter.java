@@ -0,0 +1,252 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.ImportResult;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.util.StockTransactionCsv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.nonNull;
+
+/**
+ * Bulk loads a stock transaction CSV file ({@link StockTransactionCsv}) through {@link StockTransactionBatchWriter}.
+ * <p>
+ * The file is split into ranges ending on line boundaries, and each range is memory-mapped and parsed by one of
+ * several parser threads. Parsed rows are handed to the writer in blocks through a bounded queue, so writing starts
+ * with the first block and memory stays constant whatever the file size; parsers wait while the writer catches up.
+ * Rows are written in no particular order. Lines that do not parse are skipped and counted.
+ */
+@Slf4j
+@Service
+public class StockTransactionImporter {
+
+    static final long DEFAULT_RANGE_SIZE = 64L * 1024 * 1024;
+    private static final int BLOCK_SIZE = 1_000;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long PROGRESS_INTERVAL = 1_000_000;
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+    private static final List<StockTransaction> END_OF_RANGE = new ArrayList<>(0);
+
+    private final StockTransactionBatchWriter batchWriter;
+
+    public StockTransactionImporter(StockTransactionBatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    public ImportResult importCsv(Path file) throws IOException {
+        return importCsv(file, Runtime.getRuntime().availableProcessors(), StockTransactionBatchWriter.DEFAULT_PARALLELISM);
+    }
+
+    public ImportResult importCsv(Path file, int parserThreads, int writeParallelism) throws IOException {
+        return importCsv(file, DEFAULT_RANGE_SIZE, parserThreads, writeParallelism);
+    }
+
+    ImportResult importCsv(Path file, long rangeSize, int parserThreads, int writeParallelism) throws IOException {
+        if (parserThreads < 1) {
+            throw new IllegalArgumentException("parserThreads must be positive: " + parserThreads);
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            List<Range> ranges = splitAtLines(channel, rangeSize);
+            BlockingQueue<List<StockTransaction>> blocks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            AtomicLong malformedRowCount = new AtomicLong();
+            AtomicReference<Throwable> parseFailure = new AtomicReference<>();
+
+            ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+            try {
+                ranges.forEach(range -> parsers.execute(() -> {
+                    try {
+                        parseRange(channel, range, blocks, malformedRowCount);
+                    } catch (IOException | RuntimeException e) {
+                        parseFailure.compareAndSet(null, e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    putUninterruptibly(blocks, END_OF_RANGE);
+                }));
+
+                RowIterator rows = new RowIterator(blocks, ranges.size(), start);
+                BatchWriteResult writeResult = batchWriter.saveStockTransactions(rows, writeParallelism);
+                if (parseFailure.get() instanceof IOException e) {
+                    throw e;
+                }
+                if (nonNull(parseFailure.get())) {
+                    throw new IOException("failed to parse " + file, parseFailure.get());
+                }
+
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                ImportResult result = ImportResult.builder()
+                        .rowCount(rows.count)
+                        .malformedRowCount(malformedRowCount.get())
+                        .writeResult(writeResult)
+                        .elapsed(elapsed)
+                        .build();
+                log.info("imported {} stock transactions from {} in {} ms ({} rows/s), {} malformed, {} failed",
+                        result.getRowCount(), file, elapsed.toMillis(), Math.round(result.getRowsPerSecond()),
+                        result.getMalformedRowCount(), writeResult.getFailures().size());
+                return result;
+            } finally {
+                parsers.shutdownNow();
+            }
+        }
+    }
+
+    static List<Range> splitAtLines(FileChannel channel, long rangeSize) throws IOException {
+        long size = channel.size();
+        List<Range> ranges = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = nextLineStart(channel, Math.min(size, start + rangeSize));
+            ranges.add(new Range(start, end));
+            start = end;
+        }
+        return ranges;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static void parseRange(FileChannel channel, Range range, BlockingQueue<List<StockTransaction>> blocks,
+                                   AtomicLong malformedRowCount) throws IOException, InterruptedException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range.start(), range.end() - range.start());
+        byte[] line = new byte[256];
+        List<StockTransaction> block = new ArrayList<>(BLOCK_SIZE);
+        // the header is the first line of the file
+        boolean header = range.start() == 0;
+
+        while (buffer.hasRemaining()) {
+            int length = 0;
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    break;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, length * 2);
+                }
+                line[length++] = b;
+            }
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            if (header || length == 0) {
+                header = false;
+                continue;
+            }
+
+            String text = new String(line, 0, length, StandardCharsets.UTF_8);
+            try {
+                block.add(StockTransactionCsv.fromLine(text));
+            } catch (RuntimeException e) {
+                malformedRowCount.incrementAndGet();
+                log.debug("skipped malformed line: {}", text, e);
+            }
+            if (block.size() == BLOCK_SIZE) {
+                blocks.put(block);
+                block = new ArrayList<>(BLOCK_SIZE);
+            }
+        }
+        if (!block.isEmpty()) {
+            blocks.put(block);
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<List<StockTransaction>> blocks, List<StockTransaction> block) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                blocks.put(block);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record Range(long start, long end) {
+    }
+
+    // runs on the batch writer's calling thread, which pulls rows only as fast as it writes them
+    private static final class RowIterator implements Iterator<StockTransaction> {
+
+        private final BlockingQueue<List<StockTransaction>> blocks;
+        private final long start;
+        private int pendingRanges;
+        private Iterator<StockTransaction> current = Collections.emptyIterator();
+        private long count;
+
+        RowIterator(BlockingQueue<List<StockTransaction>> blocks, int ranges, long start) {
+            this.blocks = blocks;
+            this.pendingRanges = ranges;
+            this.start = start;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && pendingRanges > 0) {
+                List<StockTransaction> block = take();
+                if (block == END_OF_RANGE) {
+                    pendingRanges--;
+                } else {
+                    current = block.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public StockTransaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (++count % PROGRESS_INTERVAL == 0) {
+                double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+                log.info("read {} stock transactions, {} rows/s", count, Math.round(count / seconds));
+            }
+            return current.next();
+        }
+
+        private List<StockTransaction> take() {
+            try {
+                return blocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("import interrupted"));
+            }
+        }
+    }
+}
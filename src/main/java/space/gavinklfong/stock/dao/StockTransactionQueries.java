@@ -0,0 +1,525 @@
+package space.gavinklfong.stock.dao;
+
+import software.amazon.awssdk.services.dynamodb.model.*;
+import space.gavinklfong.stock.model.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.ACCOUNT_TRADE_ACTION_INDEX;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TICKER_INDEX;
+
+final class StockTransactionQueries {
+
+    private static final String POSITION_ACCOUNT_NUMBER = "accountNumber";
+    private static final String POSITION_TICKER = "ticker";
+    private static final String POSITION_UNIT = "unit";
+    private static final String POSITION_BUY_UNIT = "buyUnit";
+    private static final String POSITION_SELL_UNIT = "sellUnit";
+    private static final String POSITION_BUY_AMOUNT = "buyAmount";
+    private static final String POSITION_SELL_AMOUNT = "sellAmount";
+    private static final String POSITION_TRANSACTION_COUNT = "transactionCount";
+    private static final String REFERENCE_ACCOUNT_NUMBER = "accountNumber";
+    private static final String REFERENCE_REFERENCE = "reference";
+    private static final String REFERENCE_TIMESTAMP = "timestamp";
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+
+    private final String tableName;
+    private final StockTransactionStorageFormat format;
+    private final String positionTableName;
+    private final String referenceTableName;
+    private final boolean tickerIndex;
+
+    StockTransactionQueries(StockTransactionSchema schema) {
+        this.tableName = schema.getTableName();
+        this.format = schema.getStorageFormat();
+        this.positionTableName = schema.hasPositionTable() ? schema.getPositionTableName() : null;
+        this.referenceTableName = schema.hasReferenceTable() ? schema.getReferenceTableName() : null;
+        this.tickerIndex = schema.hasTickerIndex();
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    StockTransactionStorageFormat format() {
+        return format;
+    }
+
+    String positionTableName() {
+        return positionTableName;
+    }
+
+    boolean maintainsPositions() {
+        return nonNull(positionTableName);
+    }
+
+    boolean claimsReferences() {
+        return nonNull(referenceTableName);
+    }
+
+    boolean writesTransactionally() {
+        return maintainsPositions() || claimsReferences();
+    }
+
+    PutItemRequest save(StockTransaction transaction) {
+        return PutItemRequest.builder()
+                .item(format.toItem(transaction))
+                .tableName(tableName)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    /**
+     * Puts the transactions, claims their references and adds them to their positions in one transaction.
+     * A transaction that already exists or whose reference is already claimed fails its condition and cancels
+     * the whole request, so a position never counts a transaction twice. The puts come first, in the order given,
+     * then the reference claims in the same order, so cancellation reasons can be matched back to the transactions.
+     */
+    TransactWriteItemsRequest saveTransactionally(Collection<StockTransaction> transactions) {
+        Map<List<String>, PositionDelta> deltas = new LinkedHashMap<>();
+        List<TransactWriteItem> writes = new ArrayList<>(transactions.size() * 3);
+
+        transactions.forEach(transaction -> writes.add(TransactWriteItem.builder()
+                .put(Put.builder()
+                        .tableName(tableName)
+                        .item(format.toItem(transaction))
+                        .conditionExpression("attribute_not_exists(#timestamp)")
+                        .expressionAttributeNames(Map.of("#timestamp", format.getTimestampAttribute()))
+                        .build())
+                .build()));
+
+        if (claimsReferences()) {
+            transactions.stream()
+                    .filter(transaction -> nonNull(transaction.getReference()))
+                    .forEach(transaction -> writes.add(TransactWriteItem.builder()
+                            .put(toReferenceClaim(transaction))
+                            .build()));
+        }
+
+        if (maintainsPositions()) {
+            transactions.forEach(transaction -> deltas.merge(List.of(transaction.getAccountNumber(), transaction.getTicker()),
+                    PositionDelta.of(transaction), PositionDelta::plus));
+            deltas.values().forEach(delta -> writes.add(TransactWriteItem.builder()
+                    .update(toPositionUpdate(delta))
+                    .build()));
+        }
+
+        return TransactWriteItemsRequest.builder()
+                .transactItems(writes)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    // transactions whose reference was already claimed, i.e. retries of a transaction that has been written
+    List<StockTransaction> duplicatesOf(List<StockTransaction> transactions, TransactionCanceledException e) {
+        List<StockTransaction> duplicates = new ArrayList<>();
+        if (!claimsReferences()) {
+            return duplicates;
+        }
+        int index = transactions.size();
+        for (StockTransaction transaction : transactions) {
+            if (nonNull(transaction.getReference())) {
+                if (failedCondition(e, index)) {
+                    duplicates.add(transaction);
+                }
+                index++;
+            }
+        }
+        return duplicates;
+    }
+
+    // transactions whose key is taken by a different transaction
+    List<StockTransaction> conflictsOf(List<StockTransaction> transactions, TransactionCanceledException e) {
+        List<StockTransaction> duplicates = duplicatesOf(transactions, e);
+        List<StockTransaction> conflicts = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (failedCondition(e, i) && !duplicates.contains(transactions.get(i))) {
+                conflicts.add(transactions.get(i));
+            }
+        }
+        return conflicts;
+    }
+
+    private static boolean failedCondition(TransactionCanceledException e, int index) {
+        return e.hasCancellationReasons() && index < e.cancellationReasons().size()
+                && CONDITIONAL_CHECK_FAILED.equals(e.cancellationReasons().get(index).code());
+    }
+
+    private Put toReferenceClaim(StockTransaction transaction) {
+        return Put.builder()
+                .tableName(referenceTableName)
+                .item(Map.of(
+                        REFERENCE_ACCOUNT_NUMBER, AttributeValue.fromS(transaction.getAccountNumber()),
+                        REFERENCE_REFERENCE, AttributeValue.fromS(transaction.getReference()),
+                        REFERENCE_TIMESTAMP, format.toTimestampValue(transaction.getTimestamp())))
+                .conditionExpression("attribute_not_exists(#reference)")
+                .expressionAttributeNames(Map.of("#reference", REFERENCE_REFERENCE))
+                .build();
+    }
+
+    GetItemRequest positionByAccountNumberAndTicker(String accountNumber, String ticker) {
+        return GetItemRequest.builder()
+                .tableName(positionTableName)
+                .key(toPositionKey(accountNumber, ticker))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    QueryRequest positionsByAccountNumber(String accountNumber) {
+        return QueryRequest.builder()
+                .tableName(positionTableName)
+                .keyConditionExpression("#accountNumber = :accountNumber")
+                .expressionAttributeNames(Map.of("#accountNumber", POSITION_ACCOUNT_NUMBER))
+                .expressionAttributeValues(Map.of(":accountNumber", AttributeValue.fromS(accountNumber)))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    StockPosition toStockPosition(Map<String, AttributeValue> item) {
+        return StockPosition.builder()
+                .accountNumber(item.get(POSITION_ACCOUNT_NUMBER).s())
+                .ticker(item.get(POSITION_TICKER).s())
+                .unit(Long.parseLong(item.get(POSITION_UNIT).n()))
+                .buyUnit(Long.parseLong(item.get(POSITION_BUY_UNIT).n()))
+                .sellUnit(Long.parseLong(item.get(POSITION_SELL_UNIT).n()))
+                .buyAmount(new BigDecimal(item.get(POSITION_BUY_AMOUNT).n()))
+                .sellAmount(new BigDecimal(item.get(POSITION_SELL_AMOUNT).n()))
+                .transactionCount(Long.parseLong(item.get(POSITION_TRANSACTION_COUNT).n()))
+                .build();
+    }
+
+    List<StockPosition> toStockPositions(QueryResponse response) {
+        return response.items().stream()
+                .map(this::toStockPosition)
+                .toList();
+    }
+
+    private Update toPositionUpdate(PositionDelta delta) {
+        return Update.builder()
+                .tableName(positionTableName)
+                .key(toPositionKey(delta.accountNumber(), delta.ticker()))
+                .updateExpression("ADD #unit :unit, #buyUnit :buyUnit, #sellUnit :sellUnit, "
+                        + "#buyAmount :buyAmount, #sellAmount :sellAmount, #transactionCount :transactionCount")
+                .expressionAttributeNames(Map.of(
+                        "#unit", POSITION_UNIT,
+                        "#buyUnit", POSITION_BUY_UNIT,
+                        "#sellUnit", POSITION_SELL_UNIT,
+                        "#buyAmount", POSITION_BUY_AMOUNT,
+                        "#sellAmount", POSITION_SELL_AMOUNT,
+                        "#transactionCount", POSITION_TRANSACTION_COUNT))
+                .expressionAttributeValues(Map.of(
+                        ":unit", AttributeValue.fromN(Long.toString(delta.buyUnit() - delta.sellUnit())),
+                        ":buyUnit", AttributeValue.fromN(Long.toString(delta.buyUnit())),
+                        ":sellUnit", AttributeValue.fromN(Long.toString(delta.sellUnit())),
+                        ":buyAmount", AttributeValue.fromN(delta.buyAmount().toPlainString()),
+                        ":sellAmount", AttributeValue.fromN(delta.sellAmount().toPlainString()),
+                        ":transactionCount", AttributeValue.fromN(Long.toString(delta.transactionCount()))))
+                .build();
+    }
+
+    private static Map<String, AttributeValue> toPositionKey(String accountNumber, String ticker) {
+        return Map.of(
+                POSITION_ACCOUNT_NUMBER, AttributeValue.fromS(accountNumber),
+                POSITION_TICKER, AttributeValue.fromS(ticker)
+        );
+    }
+
+    private record PositionDelta(String accountNumber, String ticker, long buyUnit, long sellUnit,
+                                 BigDecimal buyAmount, BigDecimal sellAmount, long transactionCount) {
+
+        static PositionDelta of(StockTransaction transaction) {
+            BigDecimal amount = transaction.getUnitPrice().multiply(BigDecimal.valueOf(transaction.getUnit()));
+            boolean buy = transaction.getTradeAction() == TradeAction.BUY;
+            return new PositionDelta(transaction.getAccountNumber(), transaction.getTicker(),
+                    buy ? transaction.getUnit() : 0, buy ? 0 : transaction.getUnit(),
+                    buy ? amount : BigDecimal.ZERO, buy ? BigDecimal.ZERO : amount, 1);
+        }
+
+        PositionDelta plus(PositionDelta other) {
+            return new PositionDelta(accountNumber, ticker, buyUnit + other.buyUnit, sellUnit + other.sellUnit,
+                    buyAmount.add(other.buyAmount), sellAmount.add(other.sellAmount),
+                    transactionCount + other.transactionCount);
+        }
+    }
+
+    QueryRequest byAccountNumber(String accountNumber) {
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":accountNumber", AttributeValue.builder().s(accountNumber).build()
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#accountNumber = :accountNumber")
+                .expressionAttributeNames(Map.of("#accountNumber", format.getAccountNumberAttribute()))
+                .expressionAttributeValues(attrValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    QueryRequest byAccountNumber(String accountNumber, int pageSize, StockTransactionKey exclusiveStartKey) {
+        return byAccountNumber(accountNumber).toBuilder()
+                .exclusiveStartKey(toExclusiveStartKey(exclusiveStartKey))
+                .limit(pageSize)
+                .build();
+    }
+
+    QueryRequest byAccountNumberAndTradeAction(String accountNumber, TradeAction tradeAction, int pageSize,
+                                               StockTransactionKey exclusiveStartKey) {
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":accountNumberTradeAction", AttributeValue.builder()
+                        .s(StockTransaction.toAccountNumberTradeAction(accountNumber, tradeAction))
+                        .build()
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(ACCOUNT_TRADE_ACTION_INDEX)
+                .keyConditionExpression("#accountNumberTradeAction = :accountNumberTradeAction")
+                .expressionAttributeNames(Map.of("#accountNumberTradeAction", format.getAccountNumberTradeActionAttribute()))
+                .expressionAttributeValues(attrValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .exclusiveStartKey(toIndexExclusiveStartKey(exclusiveStartKey, tradeAction))
+                .limit(pageSize)
+                .build();
+    }
+
+    QueryRequest byAccountNumberWithTradeActionFilter(String accountNumber, TradeAction tradeAction, int pageSize,
+                                                      StockTransactionKey exclusiveStartKey) {
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":accountNumber", AttributeValue.builder().s(accountNumber).build(),
+                ":tradeAction", AttributeValue.builder().s(tradeAction.name()).build()
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#accountNumber = :accountNumber")
+                .filterExpression("#tradeAction = :tradeAction")
+                .expressionAttributeNames(Map.of(
+                        "#accountNumber", format.getAccountNumberAttribute(),
+                        "#tradeAction", format.getTradeActionAttribute()))
+                .expressionAttributeValues(attrValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .exclusiveStartKey(toExclusiveStartKey(exclusiveStartKey))
+                .limit(pageSize)
+                .build();
+    }
+
+    QueryRequest byAccountNumberWithTimeRange(String accountNumber, Instant startTime, Instant endTime) {
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":accountNumber", AttributeValue.builder().s(accountNumber).build(),
+                ":startTime", format.toTimestampValue(startTime),
+                ":endTime", format.toTimestampValue(endTime)
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#accountNumber = :accountNumber AND #timestamp BETWEEN :startTime AND :endTime")
+                .expressionAttributeNames(Map.of(
+                        "#accountNumber", format.getAccountNumberAttribute(),
+                        "#timestamp", format.getTimestampAttribute()))
+                .expressionAttributeValues(attrValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    // newest first, so a page holds the latest transactions in the range
+    QueryRequest byAccountNumberWithTimeRange(String accountNumber, Instant startTime, Instant endTime, int pageSize,
+                                              StockTransactionKey exclusiveStartKey) {
+        return byAccountNumberWithTimeRange(accountNumber, startTime, endTime).toBuilder()
+                .scanIndexForward(false)
+                .exclusiveStartKey(toExclusiveStartKey(exclusiveStartKey))
+                .limit(pageSize)
+                .build();
+    }
+
+    /**
+     * Account, trade action and time range all go into the key condition: with a trade action the query runs on
+     * the account and trade action index, which is sorted by timestamp like the table. Only the ticker is left to a
+     * filter, so without one every item read is returned.
+     */
+    QueryRequest byCriteria(StockTransactionCriteria criteria, int limit, StockTransactionKey exclusiveStartKey) {
+        Map<String, String> attrNames = new HashMap<>();
+        Map<String, AttributeValue> attrValues = new HashMap<>();
+        QueryRequest.Builder builder = QueryRequest.builder()
+                .tableName(tableName);
+
+        if (nonNull(criteria.getTradeAction())) {
+            attrNames.put("#partition", format.getAccountNumberTradeActionAttribute());
+            attrValues.put(":partition", AttributeValue.fromS(
+                    StockTransaction.toAccountNumberTradeAction(criteria.getAccountNumber(), criteria.getTradeAction())));
+            builder.indexName(ACCOUNT_TRADE_ACTION_INDEX)
+                    .exclusiveStartKey(toIndexExclusiveStartKey(exclusiveStartKey, criteria.getTradeAction()));
+        } else {
+            attrNames.put("#partition", format.getAccountNumberAttribute());
+            attrValues.put(":partition", AttributeValue.fromS(criteria.getAccountNumber()));
+            builder.exclusiveStartKey(toExclusiveStartKey(exclusiveStartKey));
+        }
+
+        StringBuilder keyCondition = new StringBuilder("#partition = :partition");
+        if (nonNull(criteria.getStartTime()) || nonNull(criteria.getEndTime())) {
+            attrNames.put("#timestamp", format.getTimestampAttribute());
+            if (nonNull(criteria.getStartTime())) {
+                attrValues.put(":startTime", format.toTimestampValue(criteria.getStartTime()));
+            }
+            if (nonNull(criteria.getEndTime())) {
+                attrValues.put(":endTime", format.toTimestampValue(criteria.getEndTime()));
+            }
+            keyCondition.append(isNull(criteria.getEndTime()) ? " AND #timestamp >= :startTime"
+                    : isNull(criteria.getStartTime()) ? " AND #timestamp <= :endTime"
+                    : " AND #timestamp BETWEEN :startTime AND :endTime");
+        }
+
+        if (nonNull(criteria.getTicker())) {
+            attrNames.put("#ticker", format.getTickerAttribute());
+            attrValues.put(":ticker", AttributeValue.fromS(criteria.getTicker()));
+            builder.filterExpression("#ticker = :ticker");
+        }
+
+        return builder
+                .keyConditionExpression(keyCondition.toString())
+                .expressionAttributeNames(attrNames)
+                .expressionAttributeValues(attrValues)
+                .scanIndexForward(!criteria.isNewestFirst())
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .limit(limit)
+                .build();
+    }
+
+    // all accounts, oldest first; transactions at the same time are ordered by account in no particular way
+    QueryRequest byTickerWithTimeRange(String ticker, Instant startTime, Instant endTime, int pageSize,
+                                       StockTransactionKey exclusiveStartKey) {
+        if (!tickerIndex) {
+            throw new IllegalStateException("no ticker index configured for " + tableName);
+        }
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":ticker", AttributeValue.fromS(ticker),
+                ":startTime", format.toTimestampValue(startTime),
+                ":endTime", format.toTimestampValue(endTime)
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(TICKER_INDEX)
+                .keyConditionExpression("#ticker = :ticker AND #timestamp BETWEEN :startTime AND :endTime")
+                .expressionAttributeNames(Map.of(
+                        "#ticker", format.getTickerAttribute(),
+                        "#timestamp", format.getTimestampAttribute()))
+                .expressionAttributeValues(attrValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .exclusiveStartKey(nonNull(exclusiveStartKey) ? format.toTickerIndexKey(exclusiveStartKey, ticker) : null)
+                .limit(pageSize)
+                .build();
+    }
+
+    // newest first
+    QueryRequest byBucketWithTimeRange(String bucket, Instant startTime, Instant endTime, int limit) {
+        Map<String, AttributeValue> attrValues = Map.of(
+                ":bucket", AttributeValue.fromS(bucket),
+                ":startTime", format.toTimestampValue(startTime),
+                ":endTime", format.toTimestampValue(endTime)
+        );
+
+        return QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#bucket = :bucket AND #timestamp BETWEEN :startTime AND :endTime")
+                .expressionAttributeNames(Map.of(
+                        "#bucket", format.getBucketAttribute(),
+                        "#timestamp", format.getTimestampAttribute()))
+                .expressionAttributeValues(attrValues)
+                .scanIndexForward(false)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .limit(limit)
+                .build();
+    }
+
+    PutItemRequest save(StockTransaction transaction, String bucket) {
+        Map<String, AttributeValue> item = format.toItem(transaction);
+        item.put(format.getBucketAttribute(), AttributeValue.fromS(bucket));
+        return PutItemRequest.builder()
+                .item(item)
+                .tableName(tableName)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    // only the attributes of StockTransactionSummary are read, the last evaluated key is returned as usual
+    QueryRequest withSummaryProjection(QueryRequest queryRequest) {
+        Map<String, String> attrNames = new HashMap<>(queryRequest.expressionAttributeNames());
+        attrNames.put("#summaryTimestamp", format.getTimestampAttribute());
+        attrNames.put("#summaryTicker", format.getTickerAttribute());
+        attrNames.put("#summaryTradeAction", format.getTradeActionAttribute());
+        attrNames.put("#summaryUnit", format.getUnitAttribute());
+
+        return queryRequest.toBuilder()
+                .projectionExpression("#summaryTimestamp, #summaryTicker, #summaryTradeAction, #summaryUnit")
+                .expressionAttributeNames(attrNames)
+                .build();
+    }
+
+    Map<String, AttributeValue> toExclusiveStartKey(StockTransactionKey exclusiveStartKey) {
+        return nonNull(exclusiveStartKey) ? format.toKey(exclusiveStartKey) : null;
+    }
+
+    // an index LastEvaluatedKey carries the index key as well as the table key
+    Map<String, AttributeValue> toIndexExclusiveStartKey(StockTransactionKey exclusiveStartKey, TradeAction tradeAction) {
+        return nonNull(exclusiveStartKey) ? format.toIndexKey(exclusiveStartKey, tradeAction) : null;
+    }
+
+    StockTransaction toStockTransaction(Map<String, AttributeValue> item) {
+        return format.toStockTransaction(item);
+    }
+
+    List<StockTransaction> toStockTransactions(QueryResponse response) {
+        return response.items().stream()
+                .map(format::toStockTransaction)
+                .toList();
+    }
+
+    QueryResultPage<StockTransaction, StockTransactionKey> toQueryResultPage(QueryResponse response) {
+        return QueryResultPage
+                .<StockTransaction, StockTransactionKey>builder()
+                .results(toStockTransactions(response))
+                .nextQueryKey(toStockTransactionKey(response))
+                .build();
+    }
+
+    QueryResultPage<StockTransactionSummary, StockTransactionKey> toSummaryPage(QueryResponse response) {
+        return QueryResultPage
+                .<StockTransactionSummary, StockTransactionKey>builder()
+                .results(response.items().stream()
+                        .map(format::toStockTransactionSummary)
+                        .toList())
+                .nextQueryKey(toStockTransactionKey(response))
+                .build();
+    }
+
+    StockTransactionKey toStockTransactionKey(QueryResponse queryResponse) {
+        return queryResponse.hasLastEvaluatedKey()
+                ? format.toStockTransactionKey(queryResponse.lastEvaluatedKey())
+                : null;
+    }
+
+    static QueryResultPage<StockTransaction, StockTransactionKey> toPage(List<StockTransaction> results, int pageSize,
+                                                                         StockTransactionKey lastEvaluatedKey) {
+        if (results.size() > pageSize) {
+            StockTransaction lastItem = results.get(pageSize - 1);
+
+            return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                    .results(results.subList(0, pageSize))
+                    .nextQueryKey(StockTransactionKey.builder()
+                            .accountNumber(lastItem.getAccountNumber())
+                            .timestamp(lastItem.getTimestamp())
+                            .build())
+                    .build();
+        } else {
+            return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                    .results(results)
+                    .nextQueryKey(lastEvaluatedKey)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.Builder;
+import lombok.Value;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+
+@Builder
+@Value
+public class StockTransactionSchema {
+
+    public static final StockTransactionSchema DEFAULT = StockTransactionSchema.builder()
+            .tableName(TABLE_NAME)
+            .storageFormat(StockTransactionStorageFormat.ISO_STRING)
+            .build();
+
+    String tableName;
+    StockTransactionStorageFormat storageFormat;
+    // per account and ticker aggregates are maintained with every write when set, unless sharded
+    String positionTableName;
+    // references are claimed in this table when set, so a retried save with the same reference is written once,
+    // unless sharded
+    String referenceTableName;
+    // all accounts' transactions by ticker and time when set, unless sharded. Each ticker is a single index
+    // partition, so a popular ticker's writes are capped by what one partition of the index takes
+    boolean tickerIndex;
+    // partition key is suffixed with a day bucket and one of shardCount shards when positive, see ShardedStockTransactionDao
+    int shardCount;
+    // on demand when not set
+    StockTransactionCapacity capacity;
+
+    public StockTransactionCapacity getCapacity() {
+        return isNull(capacity) ? StockTransactionCapacity.ON_DEMAND : capacity;
+    }
+
+    // both side tables are keyed by account and would concentrate a heavy account's writes again
+    public boolean hasPositionTable() {
+        return nonNull(positionTableName) && !isSharded();
+    }
+
+    public boolean hasReferenceTable() {
+        return nonNull(referenceTableName) && !isSharded();
+    }
+
+    public boolean hasTickerIndex() {
+        return tickerIndex && !isSharded();
+    }
+
+    public boolean isSharded() {
+        return shardCount > 0;
+    }
+}
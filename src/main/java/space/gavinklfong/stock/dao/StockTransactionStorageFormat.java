@@ -0,0 +1,183 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.StockTransactionSummary;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Item layout of the stock transaction table.
+ * <p>
+ * {@link #ISO_STRING} is the original layout with descriptive attribute names and an ISO-8601 string sort key.
+ * {@link #COMPACT} uses short attribute names and stores the sort key as epoch nanoseconds in a number attribute,
+ * which keeps the ordering while making items and keys smaller and avoiding date parsing on every read.
+ * The key attribute types are fixed when a table is created, so a table holds a single layout; decoding accepts
+ * either layout so items can be read back while copying a table from one layout to the other.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum StockTransactionStorageFormat {
+
+    ISO_STRING("accountNumber", "timestamp", "ticker", "tradeAction", "unit", "unitPrice", "reference",
+            "accountNumberTradeAction", "accountNumberBucket", ScalarAttributeType.S),
+    COMPACT("a", "t", "k", "s", "u", "p", "r", "as", "b", ScalarAttributeType.N);
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final Map<TradeAction, AttributeValue> TRADE_ACTION_VALUES = new EnumMap<>(TradeAction.class);
+
+    static {
+        for (TradeAction tradeAction : TradeAction.values()) {
+            TRADE_ACTION_VALUES.put(tradeAction, AttributeValue.fromS(tradeAction.name()));
+        }
+    }
+
+    private final String accountNumberAttribute;
+    private final String timestampAttribute;
+    private final String tickerAttribute;
+    private final String tradeActionAttribute;
+    private final String unitAttribute;
+    private final String unitPriceAttribute;
+    private final String referenceAttribute;
+    private final String accountNumberTradeActionAttribute;
+    private final String bucketAttribute;
+    private final ScalarAttributeType timestampAttributeType;
+
+    public AttributeValue toTimestampValue(Instant timestamp) {
+        return timestampAttributeType == ScalarAttributeType.N
+                ? AttributeValue.fromN(Long.toString(toEpochNanos(timestamp)))
+                : AttributeValue.fromS(DateTimeFormatter.ISO_INSTANT.format(timestamp));
+    }
+
+    public Map<String, AttributeValue> toItem(StockTransaction transaction) {
+        Map<String, AttributeValue> item = new HashMap<>(16);
+        item.put(accountNumberAttribute, AttributeValue.fromS(transaction.getAccountNumber()));
+        item.put(timestampAttribute, toTimestampValue(transaction.getTimestamp()));
+        item.put(tickerAttribute, AttributeValue.fromS(transaction.getTicker()));
+        item.put(tradeActionAttribute, TRADE_ACTION_VALUES.get(transaction.getTradeAction()));
+        item.put(unitAttribute, AttributeValue.fromN(Integer.toString(transaction.getUnit())));
+        item.put(unitPriceAttribute, AttributeValue.fromN(transaction.getUnitPrice().toPlainString()));
+        item.put(accountNumberTradeActionAttribute, AttributeValue.fromS(
+                StockTransaction.toAccountNumberTradeAction(transaction.getAccountNumber(), transaction.getTradeAction())));
+        if (nonNull(transaction.getReference())) {
+            item.put(referenceAttribute, AttributeValue.fromS(transaction.getReference()));
+        }
+        return item;
+    }
+
+    public StockTransaction toStockTransaction(Map<String, AttributeValue> item) {
+        StockTransactionStorageFormat format = formatOf(item);
+        return StockTransaction.builder()
+                .accountNumber(stringOf(item.get(format.accountNumberAttribute)))
+                .timestamp(toTimestamp(item.get(format.timestampAttribute)))
+                .ticker(stringOf(item.get(format.tickerAttribute)))
+                .tradeAction(toTradeAction(item.get(format.tradeActionAttribute)))
+                .unit(toUnit(item.get(format.unitAttribute)))
+                .unitPrice(toBigDecimal(item.get(format.unitPriceAttribute)))
+                .reference(stringOf(item.get(format.referenceAttribute)))
+                .build();
+    }
+
+    public StockTransactionSummary toStockTransactionSummary(Map<String, AttributeValue> item) {
+        StockTransactionStorageFormat format = formatOf(item);
+        return StockTransactionSummary.builder()
+                .timestamp(toTimestamp(item.get(format.timestampAttribute)))
+                .ticker(stringOf(item.get(format.tickerAttribute)))
+                .tradeAction(toTradeAction(item.get(format.tradeActionAttribute)))
+                .unit(toUnit(item.get(format.unitAttribute)))
+                .build();
+    }
+
+    public Map<String, AttributeValue> toKey(StockTransactionKey key) {
+        return Map.of(
+                accountNumberAttribute, AttributeValue.fromS(key.getAccountNumber()),
+                timestampAttribute, toTimestampValue(key.getTimestamp())
+        );
+    }
+
+    public Map<String, AttributeValue> toIndexKey(StockTransactionKey key, TradeAction tradeAction) {
+        return Map.of(
+                accountNumberAttribute, AttributeValue.fromS(key.getAccountNumber()),
+                timestampAttribute, toTimestampValue(key.getTimestamp()),
+                accountNumberTradeActionAttribute, AttributeValue.fromS(
+                        StockTransaction.toAccountNumberTradeAction(key.getAccountNumber(), tradeAction))
+        );
+    }
+
+    public Map<String, AttributeValue> toTickerIndexKey(StockTransactionKey key, String ticker) {
+        return Map.of(
+                accountNumberAttribute, AttributeValue.fromS(key.getAccountNumber()),
+                timestampAttribute, toTimestampValue(key.getTimestamp()),
+                tickerAttribute, AttributeValue.fromS(ticker)
+        );
+    }
+
+    public StockTransactionKey toStockTransactionKey(Map<String, AttributeValue> key) {
+        StockTransactionStorageFormat format = formatOf(key);
+        return StockTransactionKey.builder()
+                .accountNumber(stringOf(key.get(format.accountNumberAttribute)))
+                .timestamp(toTimestamp(key.get(format.timestampAttribute)))
+                .build();
+    }
+
+    private StockTransactionStorageFormat formatOf(Map<String, AttributeValue> item) {
+        if (item.containsKey(timestampAttribute)) {
+            return this;
+        }
+        for (StockTransactionStorageFormat format : values()) {
+            if (item.containsKey(format.timestampAttribute)) {
+                return format;
+            }
+        }
+        return this;
+    }
+
+    static long toEpochNanos(Instant timestamp) {
+        return Math.addExact(Math.multiplyExact(timestamp.getEpochSecond(), NANOS_PER_SECOND), timestamp.getNano());
+    }
+
+    private static Instant toTimestamp(AttributeValue value) {
+        if (isNull(value)) {
+            return null;
+        }
+        return nonNull(value.s())
+                ? Instant.parse(value.s())
+                : Instant.ofEpochSecond(0L, Long.parseLong(value.n()));
+    }
+
+    private static String stringOf(AttributeValue value) {
+        return isNull(value) ? null : value.s();
+    }
+
+    private static TradeAction toTradeAction(AttributeValue value) {
+        if (isNull(value)) {
+            return null;
+        }
+        return switch (value.s()) {
+            case "BUY" -> TradeAction.BUY;
+            case "SELL" -> TradeAction.SELL;
+            default -> TradeAction.valueOf(value.s());
+        };
+    }
+
+    private static int toUnit(AttributeValue value) {
+        return isNull(value) ? 0 : Integer.parseInt(value.n());
+    }
+
+    private static BigDecimal toBigDecimal(AttributeValue value) {
+        return isNull(value) ? null : new BigDecimal(value.n());
+    }
+}
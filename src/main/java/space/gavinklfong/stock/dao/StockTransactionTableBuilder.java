@@ -7,9 +7,11 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
 import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.ACCOUNT_TRADE_ACTION_INDEX;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TICKER_INDEX;
 
 
 @Slf4j
@@ -17,11 +19,18 @@ import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
 public class StockTransactionTableBuilder {
 
     private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionSchema stockTransactionSchema;
 
     public void deleteTable() {
+        if (stockTransactionSchema.hasPositionTable()) {
+            deleteSideTable(stockTransactionSchema.getPositionTableName());
+        }
+        if (stockTransactionSchema.hasReferenceTable()) {
+            deleteSideTable(stockTransactionSchema.getReferenceTableName());
+        }
 
         DeleteTableRequest request = DeleteTableRequest.builder()
-                .tableName(TABLE_NAME)
+                .tableName(stockTransactionSchema.getTableName())
                 .build();
 
         dynamoDbClient.deleteTable(request);
@@ -29,50 +38,170 @@ public class StockTransactionTableBuilder {
 
     public void createTable() {
         DynamoDbWaiter dbWaiter = dynamoDbClient.waiter();
-        CreateTableRequest request = CreateTableRequest.builder()
+        CreateTableRequest.Builder requestBuilder = CreateTableRequest.builder()
                 .attributeDefinitions(buildAttributeDefinitions())
                 .keySchema(buildKeySchemaElements())
-                .provisionedThroughput(
-                        ProvisionedThroughput.builder()
-                        .readCapacityUnits(1L)
-                        .writeCapacityUnits(1L)
-                        .build())
-                .tableName(TABLE_NAME)
-                .build();
+                .billingMode(stockTransactionSchema.getCapacity().getBillingMode())
+                .provisionedThroughput(provisionedThroughput())
+                .tableName(stockTransactionSchema.getTableName());
+
+        // the indexes are paged with keys of the unsharded layout, and the account index would undo the write sharding
+        if (!stockTransactionSchema.isSharded()) {
+            List<GlobalSecondaryIndex> indexes = new ArrayList<>(List.of(buildAccountTradeActionIndex()));
+            if (stockTransactionSchema.hasTickerIndex()) {
+                indexes.add(buildTickerIndex());
+            }
+            requestBuilder.globalSecondaryIndexes(indexes);
+        }
+        CreateTableRequest request = requestBuilder.build();
 
         dynamoDbClient.createTable(request);
 
         DescribeTableRequest tableRequest = DescribeTableRequest.builder()
-                .tableName(TABLE_NAME)
+                .tableName(stockTransactionSchema.getTableName())
                 .build();
 
         // Wait until the Amazon DynamoDB table is created
         WaiterResponse<DescribeTableResponse> waiterResponse = dbWaiter.waitUntilTableExists(tableRequest);
         waiterResponse.matched().response().ifPresent(System.out::println);
 
+        if (stockTransactionSchema.hasPositionTable()) {
+            createSideTable(dbWaiter, stockTransactionSchema.getPositionTableName(), "ticker");
+        }
+        if (stockTransactionSchema.hasReferenceTable()) {
+            createSideTable(dbWaiter, stockTransactionSchema.getReferenceTableName(), "reference");
+        }
+    }
+
+    private void deleteSideTable(String tableName) {
+        try {
+            dynamoDbClient.deleteTable(DeleteTableRequest.builder()
+                    .tableName(tableName)
+                    .build());
+        } catch (ResourceNotFoundException e) {
+            log.debug("table {} does not exist", tableName);
+        }
+    }
+
+    // position and reference tables are keyed by account number and a string sort key
+    private void createSideTable(DynamoDbWaiter dbWaiter, String tableName, String sortKeyAttribute) {
+        CreateTableRequest request = CreateTableRequest.builder()
+                .attributeDefinitions(
+                        AttributeDefinition.builder()
+                                .attributeName("accountNumber")
+                                .attributeType(ScalarAttributeType.S)
+                                .build(),
+                        AttributeDefinition.builder()
+                                .attributeName(sortKeyAttribute)
+                                .attributeType(ScalarAttributeType.S)
+                                .build())
+                .keySchema(
+                        KeySchemaElement.builder()
+                                .attributeName("accountNumber")
+                                .keyType(KeyType.HASH)
+                                .build(),
+                        KeySchemaElement.builder()
+                                .attributeName(sortKeyAttribute)
+                                .keyType(KeyType.RANGE)
+                                .build())
+                .billingMode(stockTransactionSchema.getCapacity().getBillingMode())
+                .provisionedThroughput(provisionedThroughput())
+                .tableName(tableName)
+                .build();
+
+        dynamoDbClient.createTable(request);
+
+        dbWaiter.waitUntilTableExists(DescribeTableRequest.builder()
+                .tableName(tableName)
+                .build());
     }
 
     private List<KeySchemaElement> buildKeySchemaElements() {
+        StockTransactionStorageFormat format = stockTransactionSchema.getStorageFormat();
         return List.of(KeySchemaElement.builder()
-                        .attributeName("accountNumber")
+                        .attributeName(partitionKeyAttribute())
                         .keyType(KeyType.HASH)
                         .build(),
                 KeySchemaElement.builder()
-                        .attributeName("timestamp")
+                        .attributeName(format.getTimestampAttribute())
                         .keyType(KeyType.RANGE)
                         .build());
     }
 
+    private GlobalSecondaryIndex buildAccountTradeActionIndex() {
+        StockTransactionStorageFormat format = stockTransactionSchema.getStorageFormat();
+        return GlobalSecondaryIndex.builder()
+                .indexName(ACCOUNT_TRADE_ACTION_INDEX)
+                .keySchema(KeySchemaElement.builder()
+                                .attributeName(format.getAccountNumberTradeActionAttribute())
+                                .keyType(KeyType.HASH)
+                                .build(),
+                        KeySchemaElement.builder()
+                                .attributeName(format.getTimestampAttribute())
+                                .keyType(KeyType.RANGE)
+                                .build())
+                .projection(Projection.builder()
+                        .projectionType(ProjectionType.ALL)
+                        .build())
+                .provisionedThroughput(provisionedThroughput())
+                .build();
+    }
+
+    // all accounts' transactions in a ticker by time, for cross-account queries without a scan
+    private GlobalSecondaryIndex buildTickerIndex() {
+        StockTransactionStorageFormat format = stockTransactionSchema.getStorageFormat();
+        return GlobalSecondaryIndex.builder()
+                .indexName(TICKER_INDEX)
+                .keySchema(KeySchemaElement.builder()
+                                .attributeName(format.getTickerAttribute())
+                                .keyType(KeyType.HASH)
+                                .build(),
+                        KeySchemaElement.builder()
+                                .attributeName(format.getTimestampAttribute())
+                                .keyType(KeyType.RANGE)
+                                .build())
+                .projection(Projection.builder()
+                        .projectionType(ProjectionType.ALL)
+                        .build())
+                .provisionedThroughput(provisionedThroughput())
+                .build();
+    }
+
+    // the table, its indexes and the side tables take the same units; on demand they must be left out
+    private ProvisionedThroughput provisionedThroughput() {
+        StockTransactionCapacity capacity = stockTransactionSchema.getCapacity();
+        return capacity.isProvisioned() ? capacity.toProvisionedThroughput() : null;
+    }
+
     private List<AttributeDefinition> buildAttributeDefinitions() {
-        return List.of(
+        StockTransactionStorageFormat format = stockTransactionSchema.getStorageFormat();
+        List<AttributeDefinition> attributeDefinitions = new ArrayList<>(List.of(
                 AttributeDefinition.builder()
-                        .attributeName("accountNumber")
+                        .attributeName(partitionKeyAttribute())
                         .attributeType(ScalarAttributeType.S)
                         .build(),
                 AttributeDefinition.builder()
-                        .attributeName("timestamp")
-                        .attributeType(ScalarAttributeType.S)
-                        .build());
+                        .attributeName(format.getTimestampAttribute())
+                        .attributeType(format.getTimestampAttributeType())
+                        .build()));
+        if (!stockTransactionSchema.isSharded()) {
+            attributeDefinitions.add(AttributeDefinition.builder()
+                    .attributeName(format.getAccountNumberTradeActionAttribute())
+                    .attributeType(ScalarAttributeType.S)
+                    .build());
+        }
+        if (stockTransactionSchema.hasTickerIndex()) {
+            attributeDefinitions.add(AttributeDefinition.builder()
+                    .attributeName(format.getTickerAttribute())
+                    .attributeType(ScalarAttributeType.S)
+                    .build());
+        }
+        return attributeDefinitions;
+    }
+
+    private String partitionKeyAttribute() {
+        StockTransactionStorageFormat format = stockTransactionSchema.getStorageFormat();
+        return stockTransactionSchema.isSharded() ? format.getBucketAttribute() : format.getAccountNumberAttribute();
     }
 
 }
@@ -0,0 +1,47 @@
+package space.gavinklfong.stock.dao;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.StockTransaction;
+
+import java.util.stream.Stream;
+
+/**
+ * Copies every stock transaction of one table into another, re-encoding items in the target storage format.
+ * Used to move an existing {@link StockTransactionStorageFormat#ISO_STRING} table to
+ * {@link StockTransactionStorageFormat#COMPACT}; readers keep using the source table until the copy completes.
+ * Positions are added up in the target's position table, which should therefore not be shared with the source.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class StockTransactionTableMigrator {
+
+    private final DynamoDbClient dynamoDbClient;
+    private final StockTransactionDaoMetrics metrics;
+
+    public BatchWriteResult copy(StockTransactionSchema source, StockTransactionSchema target) {
+        ScanRequest scanRequest = ScanRequest.builder()
+                .tableName(source.getTableName())
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        StockTransactionDaoMetrics.Operation scan = metrics.start("copy", source.getTableName());
+        Stream<StockTransaction> stockTransactions = dynamoDbClient.scanPaginator(scanRequest)
+                .stream()
+                .map(scan::recordPage)
+                .flatMap(response -> response.items().stream())
+                .map(source.getStorageFormat()::toStockTransaction)
+                .onClose(scan::stop);
+
+        BatchWriteResult result = new StockTransactionBatchWriter(dynamoDbClient, target, metrics)
+                .saveStockTransactions(stockTransactions);
+
+        log.info("copied {} stock transactions from {} to {}, {} duplicates, {} failed", result.getWrittenCount(),
+                source.getTableName(), target.getTableName(), result.getDuplicateCount(), result.getFailures().size());
+        return result;
+    }
+}
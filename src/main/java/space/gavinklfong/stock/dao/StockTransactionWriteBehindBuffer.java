@@ -0,0 +1,232 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import space.gavinklfong.stock.config.StockTransactionWriteBehindProperties;
+import space.gavinklfong.stock.model.BatchWriteFailure;
+import space.gavinklfong.stock.model.StockTransaction;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Opt-in write-behind mode: {@link #saveStockTransaction} queues the transaction and returns, and a flusher thread
+ * writes the queue through {@link StockTransactionBatchWriter} once {@code flushSize} transactions are waiting or
+ * {@code flushInterval} has passed. A full queue blocks the caller for up to {@code offerTimeout} before rejecting.
+ * Queued transactions are flushed on shutdown; anything still queued when the process dies is lost.
+ * <p>
+ * A transaction a flush fails to write is queued again, for up to {@code maxFlushAttempts} flushes in all. One
+ * that still fails, or that can never be written, is kept with the reason until taken with {@link #drainFailures}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "stock-transaction.write-behind", name = "enabled", havingValue = "true")
+public class StockTransactionWriteBehindBuffer implements AutoCloseable {
+
+    static final String QUEUE_DEPTH_GAUGE = "stock.transaction.write.behind.queue.depth";
+    static final String FLUSH_TIMER = "stock.transaction.write.behind.flush";
+    static final String FAILED_COUNTER = "stock.transaction.write.behind.failed";
+    static final String REJECTED_COUNTER = "stock.transaction.write.behind.rejected";
+    static final String RETRIED_COUNTER = "stock.transaction.write.behind.retried";
+    static final String FAILURES_GAUGE = "stock.transaction.write.behind.failures";
+
+    private static final long FULL_QUEUE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final StockTransactionBatchWriter batchWriter;
+    private final int capacity;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final Duration shutdownTimeout;
+    private final int maxFlushAttempts;
+
+    // the queue itself is unbounded, the count bounds it without taking a lock
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Queue<BatchWriteFailure> failures = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    private final Timer flushTimer;
+    private final Counter failedCounter;
+    private final Counter rejectedCounter;
+    private final Counter retriedCounter;
+    private final Thread flusher;
+
+    public StockTransactionWriteBehindBuffer(StockTransactionBatchWriter batchWriter,
+                                             StockTransactionWriteBehindProperties properties,
+                                             MeterRegistry meterRegistry) {
+        this.batchWriter = batchWriter;
+        this.capacity = properties.getCapacity();
+        this.flushSize = properties.getFlushSize();
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        this.offerTimeoutNanos = properties.getOfferTimeout().toNanos();
+        this.shutdownTimeout = properties.getShutdownTimeout();
+        this.maxFlushAttempts = properties.getMaxFlushAttempts();
+
+        Gauge.builder(QUEUE_DEPTH_GAUGE, size, AtomicInteger::get).register(meterRegistry);
+        this.flushTimer = Timer.builder(FLUSH_TIMER).register(meterRegistry);
+        this.failedCounter = meterRegistry.counter(FAILED_COUNTER);
+        this.rejectedCounter = meterRegistry.counter(REJECTED_COUNTER);
+        this.retriedCounter = meterRegistry.counter(RETRIED_COUNTER);
+        Gauge.builder(FAILURES_GAUGE, failures, Queue::size).register(meterRegistry);
+
+        this.flusher = Thread.ofPlatform()
+                .name("stock-transaction-write-behind")
+                .daemon(true)
+                .start(this::flushUntilClosed);
+    }
+
+    public void saveStockTransaction(StockTransaction transaction) {
+        if (closed) {
+            throw new IllegalStateException("write-behind buffer is closed");
+        }
+        reserve();
+        // the flusher only stops once closed with nothing reserved, so a save that still sees the buffer open after
+        // reserving is flushed, and one that sees it closed gives its place back without having been accepted
+        if (closed) {
+            size.decrementAndGet();
+            throw new IllegalStateException("write-behind buffer is closed");
+        }
+        queue.add(new Pending(transaction, 1));
+        if (size.get() >= flushSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Transactions the buffer has given up on, each with the reason of its last failure. They are removed from the
+     * buffer as they are returned, so each is handed out once.
+     */
+    public List<BatchWriteFailure> drainFailures() {
+        List<BatchWriteFailure> drained = new ArrayList<>();
+        BatchWriteFailure failure;
+        while ((failure = failures.poll()) != null) {
+            drained.add(failure);
+        }
+        return drained;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(shutdownTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("write-behind buffer not drained within {}, {} stock transactions pending", shutdownTimeout, size.get());
+        }
+    }
+
+    private void reserve() {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        while (true) {
+            int current = size.get();
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    return;
+                }
+                continue;
+            }
+            LockSupport.unpark(flusher);
+            if (System.nanoTime() - deadline >= 0) {
+                rejectedCounter.increment();
+                throw new RejectedExecutionException("write-behind queue is full: " + capacity);
+            }
+            LockSupport.parkNanos(FULL_QUEUE_PARK_NANOS);
+        }
+    }
+
+    private void flushUntilClosed() {
+        while (!closed || size.get() > 0) {
+            if (!closed && size.get() < flushSize) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+            if (flush() == 0 && closed) {
+                // a save reserved its place but has not queued the transaction yet
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private int flush() {
+        List<Pending> batch = new ArrayList<>(Math.min(size.get(), flushSize));
+        Pending pending;
+        while (batch.size() < flushSize && (pending = queue.poll()) != null) {
+            batch.add(pending);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        size.addAndGet(-batch.size());
+
+        List<StockTransaction> transactions = batch.stream()
+                .map(Pending::transaction)
+                .toList();
+        List<BatchWriteFailure> batchFailures;
+        Timer.Sample sample = Timer.start();
+        try {
+            batchFailures = batchWriter.saveStockTransactions(transactions.iterator()).getFailures();
+        } catch (RuntimeException e) {
+            log.error("write-behind flush of {} stock transactions failed", batch.size(), e);
+            batchFailures = transactions.stream()
+                    .map(transaction -> BatchWriteFailure.builder()
+                            .stockTransaction(transaction)
+                            .reason(e.getMessage())
+                            .retryable(true)
+                            .build())
+                    .toList();
+        } finally {
+            sample.stop(flushTimer);
+        }
+
+        if (!batchFailures.isEmpty()) {
+            // failures carry the transaction instances written, which find their attempt count
+            Map<StockTransaction, Pending> attempts = new IdentityHashMap<>();
+            batch.forEach(queued -> attempts.put(queued.transaction(), queued));
+            int givenUp = 0;
+            for (BatchWriteFailure failure : batchFailures) {
+                if (!retry(attempts.get(failure.getStockTransaction()), failure)) {
+                    givenUp++;
+                }
+            }
+            log.warn("write-behind flush failed to write {} of {} stock transactions, {} given up",
+                    batchFailures.size(), batch.size(), givenUp);
+        }
+        return batch.size();
+    }
+
+    // requeued transactions were accepted before, so they go back without waiting for room in the queue
+    private boolean retry(Pending pending, BatchWriteFailure failure) {
+        if (failure.isRetryable() && nonNull(pending) && pending.attempts() < maxFlushAttempts) {
+            size.incrementAndGet();
+            queue.add(new Pending(pending.transaction(), pending.attempts() + 1));
+            retriedCounter.increment();
+            return true;
+        }
+        failures.add(failure);
+        failedCounter.increment();
+        return false;
+    }
+
+    private record Pending(StockTransaction transaction, int attempts) {
+    }
+}
@@ -0,0 +1,32 @@
+package space.gavinklfong.stock.dao;
+
+import org.springframework.stereotype.Component;
+import space.gavinklfong.stock.model.StockTransaction;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Tells the caches in front of the table about every stock transaction written through {@link StockTransactionDao},
+ * {@link StockTransactionAsyncDao} or {@link StockTransactionBatchWriter}, whichever path the write took. Listeners
+ * run on the writing thread once the write has returned, failed writes included as they may still have landed.
+ */
+@Component
+public class StockTransactionWriteListeners {
+
+    private final List<Consumer<StockTransaction>> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(Consumer<StockTransaction> listener) {
+        listeners.add(listener);
+    }
+
+    void written(StockTransaction transaction) {
+        listeners.forEach(listener -> listener.accept(transaction));
+    }
+
+    void written(Collection<StockTransaction> transactions) {
+        transactions.forEach(this::written);
+    }
+}
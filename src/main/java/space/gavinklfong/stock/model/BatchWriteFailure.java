@@ -0,0 +1,13 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Builder
+@Value
+public class BatchWriteFailure {
+    StockTransaction stockTransaction;
+    String reason;
+    // false when writing it again cannot succeed, e.g. its key is taken by a different transaction
+    boolean retryable;
+}
@@ -0,0 +1,20 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Builder
+@Value
+public class BatchWriteResult {
+    long writtenCount;
+    // acknowledged without being written: a key repeated within a chunk, written once with its last occurrence,
+    // or a reference that was already written
+    long duplicateCount;
+    List<BatchWriteFailure> failures;
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
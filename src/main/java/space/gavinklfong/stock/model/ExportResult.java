@@ -0,0 +1,14 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Builder
+@Value
+public class ExportResult {
+    long exportedCount;
+    List<Path> files;
+}
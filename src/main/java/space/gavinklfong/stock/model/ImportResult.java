@@ -0,0 +1,19 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Builder
+@Value
+public class ImportResult {
+    long rowCount;
+    long malformedRowCount;
+    BatchWriteResult writeResult;
+    Duration elapsed;
+
+    public double getRowsPerSecond() {
+        return elapsed.isZero() ? 0 : rowCount * 1_000_000_000d / elapsed.toNanos();
+    }
+}
@@ -0,0 +1,37 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+@Builder
+@Value
+public class StockPosition {
+    String accountNumber;
+    String ticker;
+    long unit;
+    long buyUnit;
+    long sellUnit;
+    BigDecimal buyAmount;
+    BigDecimal sellAmount;
+    long transactionCount;
+
+    public BigDecimal getNetCost() {
+        return buyAmount.subtract(sellAmount);
+    }
+
+    public BigDecimal getAverageBuyPrice() {
+        return buyUnit == 0 ? BigDecimal.ZERO : buyAmount.divide(BigDecimal.valueOf(buyUnit), MathContext.DECIMAL64);
+    }
+
+    public BigDecimal getMarketValue(BigDecimal marketPrice) {
+        return marketPrice.multiply(BigDecimal.valueOf(unit));
+    }
+
+    // market value of the holding less what was paid for it net of sale proceeds
+    public BigDecimal getProfitAndLoss(BigDecimal marketPrice) {
+        return getMarketValue(marketPrice).subtract(getNetCost());
+    }
+}
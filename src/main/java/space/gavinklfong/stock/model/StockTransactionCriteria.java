@@ -0,0 +1,24 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A page of one account's transactions. The time bounds are inclusive and either may be left open; trade action
+ * and ticker are optional. Pages run oldest first unless {@code newestFirst} is set, and the next page starts after
+ * {@code exclusiveStartKey}, the next query key of the previous page.
+ */
+@Builder(toBuilder = true)
+@Value
+public class StockTransactionCriteria {
+    String accountNumber;
+    Instant startTime;
+    Instant endTime;
+    TradeAction tradeAction;
+    String ticker;
+    boolean newestFirst;
+    int pageSize;
+    StockTransactionKey exclusiveStartKey;
+}
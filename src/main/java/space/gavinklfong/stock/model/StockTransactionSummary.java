@@ -0,0 +1,15 @@
+package space.gavinklfong.stock.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+@Builder
+@Value
+public class StockTransactionSummary {
+    Instant timestamp;
+    String ticker;
+    TradeAction tradeAction;
+    int unit;
+}
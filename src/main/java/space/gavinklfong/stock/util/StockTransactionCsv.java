@@ -0,0 +1,104 @@
+package space.gavinklfong.stock.util;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+
+import static java.util.Objects.isNull;
+
+/**
+ * The CSV layout of {@code stock_transaction.csv}: account number, timestamp, ticker, trade action, unit price
+ * and unit, in that order, with a header line. Exports add the reference as an optional seventh column, which
+ * is left empty when a transaction has none.
+ */
+public final class StockTransactionCsv {
+
+    public static final String[] HEADER = {"AccountNumber", "Timestamp", "Ticker", "TradeAction", "UnitPrice", "Unit", "Reference"};
+
+    public static final CSVFormat READ_FORMAT = CSVFormat.RFC4180.builder()
+            .setHeader()
+            .setSkipHeaderRecord(true)
+            .build();
+
+    public static final CSVFormat WRITE_FORMAT = CSVFormat.RFC4180;
+
+    private static final int REFERENCE_COLUMN = 6;
+
+    private StockTransactionCsv() {
+    }
+
+    public static StockTransaction fromRecord(CSVRecord csvRecord) {
+        String reference = csvRecord.size() > REFERENCE_COLUMN ? csvRecord.get(REFERENCE_COLUMN) : "";
+        return StockTransaction.builder()
+                .accountNumber(csvRecord.get(0))
+                .timestamp(Instant.parse(csvRecord.get(1)))
+                .ticker(csvRecord.get(2))
+                .tradeAction(TradeAction.valueOf(csvRecord.get(3)))
+                .unitPrice(new BigDecimal(csvRecord.get(4)))
+                .unit(Integer.parseInt(csvRecord.get(5)))
+                .reference(reference.isEmpty() ? null : reference)
+                .build();
+    }
+
+    /**
+     * Parses one line without its line terminator. Lines without quotes, which is every line of the usual files,
+     * are split on commas directly; quoted lines go through the CSV parser.
+     */
+    public static StockTransaction fromLine(String line) {
+        if (line.indexOf('"') >= 0) {
+            try (CSVParser parser = CSVParser.parse(line, WRITE_FORMAT)) {
+                return fromRecord(parser.getRecords().get(0));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String[] fields = new String[HEADER.length];
+        int count = 0;
+        int start = 0;
+        int end;
+        while ((end = line.indexOf(',', start)) >= 0 && count < HEADER.length - 1) {
+            fields[count++] = line.substring(start, end);
+            start = end + 1;
+        }
+        fields[count++] = line.substring(start);
+        if (end >= 0 || count < REFERENCE_COLUMN) {
+            throw new IllegalArgumentException("expected " + REFERENCE_COLUMN + " or " + HEADER.length + " fields: " + line);
+        }
+
+        String reference = count > REFERENCE_COLUMN ? fields[REFERENCE_COLUMN] : "";
+        return StockTransaction.builder()
+                .accountNumber(fields[0])
+                .timestamp(Instant.parse(fields[1]))
+                .ticker(fields[2])
+                .tradeAction(TradeAction.valueOf(fields[3]))
+                .unitPrice(new BigDecimal(fields[4]))
+                .unit(Integer.parseInt(fields[5]))
+                .reference(reference.isEmpty() ? null : reference)
+                .build();
+    }
+
+    public static void printHeader(CSVPrinter printer) throws IOException {
+        printer.printRecord((Object[]) HEADER);
+    }
+
+    public static void printRecord(CSVPrinter printer, StockTransaction transaction) throws IOException {
+        printer.printRecord(
+                transaction.getAccountNumber(),
+                DateTimeFormatter.ISO_INSTANT.format(transaction.getTimestamp()),
+                transaction.getTicker(),
+                transaction.getTradeAction().name(),
+                transaction.getUnitPrice().toPlainString(),
+                transaction.getUnit(),
+                isNull(transaction.getReference()) ? "" : transaction.getReference());
+    }
+}
@@ -0,0 +1,77 @@
+package space.gavinklfong.stock.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import space.gavinklfong.stock.dao.InMemoryDynamoDbClient;
+import space.gavinklfong.stock.dao.StockTransactionDaoMetrics;
+import space.gavinklfong.stock.dao.StockTransactionSchema;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DynamoDBConfigTest {
+
+    private final DynamoDBConfig dynamoDBConfig = new DynamoDBConfig();
+
+    @Test
+    void stockTransactionSchema_provisioned_takesConfiguredCapacity() {
+        StockTransactionTableProperties tableProperties = provisioned();
+
+        StockTransactionSchema schema = dynamoDBConfig.stockTransactionSchema(tableProperties);
+
+        assertThat(schema.getCapacity().isProvisioned()).isTrue();
+        assertThat(schema.getCapacity().getReadCapacityUnits()).isEqualTo(5);
+        assertThat(schema.getCapacity().getBulkShare()).isEqualTo(0.5);
+    }
+
+    @Test
+    void stockTransactionSchema_provisionedWithoutUnits_namesTheProperty() {
+        StockTransactionTableProperties tableProperties = provisioned();
+        tableProperties.setWriteCapacityUnits(0);
+
+        assertThatThrownBy(() -> dynamoDBConfig.stockTransactionSchema(tableProperties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("stock-transaction.table.write-capacity-units");
+    }
+
+    @Test
+    void stockTransactionSchema_provisionedWithShareOutOfRange_namesTheProperty() {
+        StockTransactionTableProperties tableProperties = provisioned();
+
+        tableProperties.setBulkCapacityShare(0);
+        assertThatThrownBy(() -> dynamoDBConfig.stockTransactionSchema(tableProperties))
+                .hasMessageContaining("stock-transaction.table.bulk-capacity-share");
+
+        tableProperties.setBulkCapacityShare(1.5);
+        assertThatThrownBy(() -> dynamoDBConfig.stockTransactionSchema(tableProperties))
+                .hasMessageContaining("stock-transaction.table.bulk-capacity-share");
+    }
+
+    @Test
+    void stockTransactionSchema_onDemand_ignoresUnusedCapacity() {
+        StockTransactionTableProperties tableProperties = new StockTransactionTableProperties();
+        tableProperties.setReadCapacityUnits(0);
+        tableProperties.setBulkCapacityShare(0);
+
+        assertThat(dynamoDBConfig.stockTransactionSchema(tableProperties).getCapacity().isProvisioned()).isFalse();
+    }
+
+    @Test
+    void shardedStockTransactionDao_withoutShards_namesTheProperty() {
+        StockTransactionShardedTableProperties shardedTableProperties = new StockTransactionShardedTableProperties();
+        shardedTableProperties.setName("stock-transaction-sharded");
+        shardedTableProperties.setShardCount(0);
+
+        assertThatThrownBy(() -> dynamoDBConfig.shardedStockTransactionDao(new InMemoryDynamoDbClient(),
+                shardedTableProperties, new StockTransactionDaoMetrics(new SimpleMeterRegistry())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("stock-transaction.sharded-table.shard-count");
+    }
+
+    private static StockTransactionTableProperties provisioned() {
+        StockTransactionTableProperties tableProperties = new StockTransactionTableProperties();
+        tableProperties.setBillingMode(BillingMode.PROVISIONED);
+        return tableProperties;
+    }
+}
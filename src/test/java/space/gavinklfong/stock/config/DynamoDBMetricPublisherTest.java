@@ -0,0 +1,43 @@
+package space.gavinklfong.stock.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DynamoDBMetricPublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DynamoDBMetricPublisher metricPublisher = new DynamoDBMetricPublisher(meterRegistry);
+
+    @Test
+    void publish_countsRetriesAndThrottledAttempts() {
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        apiCall.reportMetric(CoreMetric.OPERATION_NAME, "Query");
+        apiCall.reportMetric(CoreMetric.RETRY_COUNT, 2);
+        apiCall.createChild("ApiCallAttempt").reportMetric(CoreMetric.ERROR_TYPE, "Throttling");
+        apiCall.createChild("ApiCallAttempt").reportMetric(CoreMetric.ERROR_TYPE, "ServerError");
+        apiCall.createChild("ApiCallAttempt");
+
+        metricPublisher.publish(apiCall.collect());
+
+        assertThat(meterRegistry.get(DynamoDBMetricPublisher.RETRIES_COUNTER).tag("operation", "Query").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get(DynamoDBMetricPublisher.THROTTLED_ATTEMPTS_COUNTER).tag("operation", "Query").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void publish_withoutRetries_registersNothing() {
+        MetricCollector apiCall = MetricCollector.create("ApiCall");
+        apiCall.reportMetric(CoreMetric.OPERATION_NAME, "PutItem");
+        apiCall.reportMetric(CoreMetric.RETRY_COUNT, 0);
+        apiCall.createChild("ApiCallAttempt");
+
+        metricPublisher.publish(apiCall.collect());
+
+        assertThat(meterRegistry.getMeters()).isEmpty();
+    }
+}
@@ -0,0 +1,157 @@
+package space.gavinklfong.stock.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import space.gavinklfong.stock.dao.StockTransactionDao;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(StockTransactionController.class)
+class StockTransactionControllerTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final Instant FROM = Instant.parse("2022-02-11T00:00:00Z");
+    private static final Instant TO = Instant.parse("2022-02-14T00:00:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private StockTransactionDao stockTransactionDao;
+
+    @Test
+    void findStockTransactions_returnsOpaqueCursorForNextPage() throws Exception {
+        List<StockTransaction> transactions = transactions(2);
+        StockTransactionKey nextKey = toKey(transactions.get(1));
+        when(stockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(eq(ACCOUNT_NUMBER), eq(FROM), eq(TO), eq(2), isNull()))
+                .thenReturn(QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                        .results(transactions)
+                        .nextQueryKey(nextKey)
+                        .build());
+        String cursor = StockTransactionCursor.encode(nextKey);
+
+        mockMvc.perform(get("/accounts/{accountNumber}/transactions", ACCOUNT_NUMBER)
+                        .param("from", FROM.toString())
+                        .param("to", TO.toString())
+                        .param("pageSize", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.length()").value(2))
+                .andExpect(jsonPath("$.results[0].ticker").value("APPL"))
+                .andExpect(jsonPath("$.nextCursor").value(cursor));
+
+        mockMvc.perform(get("/accounts/{accountNumber}/transactions", ACCOUNT_NUMBER)
+                        .param("from", FROM.toString())
+                        .param("to", TO.toString())
+                        .param("pageSize", "2")
+                        .param("cursor", cursor))
+                .andExpect(status().isOk());
+        verify(stockTransactionDao).findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, FROM, TO, 2, nextKey);
+    }
+
+    @Test
+    void findStockTransactions_rejectsCursorOfAnotherAccount() throws Exception {
+        String cursor = StockTransactionCursor.encode(StockTransactionKey.builder()
+                .accountNumber("00000000")
+                .timestamp(FROM)
+                .build());
+
+        mockMvc.perform(get("/accounts/{accountNumber}/transactions", ACCOUNT_NUMBER).param("cursor", cursor))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/accounts/{accountNumber}/transactions", ACCOUNT_NUMBER).param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void findStockTransactions_illegalArgumentFromDao_isNotAClientError() {
+        when(stockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(eq(ACCOUNT_NUMBER), any(), any(), eq(10), isNull()))
+                .thenThrow(new IllegalArgumentException("unsupported attribute type"));
+
+        assertThatThrownBy(() -> mockMvc.perform(get("/accounts/{accountNumber}/transactions", ACCOUNT_NUMBER)
+                        .param("pageSize", "10")))
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void streamStockTransactions_writesOneLinePerTransaction() throws Exception {
+        List<StockTransaction> transactions = transactions(5);
+        when(stockTransactionDao.streamStockTransactionPagesByAccountNumberWithTimeRange(eq(ACCOUNT_NUMBER), any(), any()))
+                .thenReturn(Stream.of(transactions.subList(0, 3), transactions.subList(3, 5)));
+
+        MvcResult result = mockMvc.perform(get("/accounts/{accountNumber}/transactions/stream", ACCOUNT_NUMBER)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        assertThat(body.lines()).hasSize(5)
+                .allMatch(line -> line.startsWith("{") && line.contains("\"accountNumber\":\"" + ACCOUNT_NUMBER + "\""));
+        assertThat(body.lines().toList().get(4))
+                .contains("\"cursor\":\"" + StockTransactionCursor.encode(toKey(transactions.get(4))) + "\"");
+    }
+
+    @Test
+    void streamStockTransactions_resumesAfterCursor() throws Exception {
+        StockTransaction last = transactions(1).get(0);
+        when(stockTransactionDao.streamStockTransactionPagesByAccountNumberWithTimeRange(eq(ACCOUNT_NUMBER), any(), any()))
+                .thenReturn(Stream.empty());
+
+        MvcResult result = mockMvc.perform(get("/accounts/{accountNumber}/transactions/stream", ACCOUNT_NUMBER)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("to", TO.toString())
+                        .param("cursor", StockTransactionCursor.encode(toKey(last))))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        verify(stockTransactionDao).streamStockTransactionPagesByAccountNumberWithTimeRange(
+                ACCOUNT_NUMBER, last.getTimestamp().plusNanos(1), TO);
+    }
+
+    private static List<StockTransaction> transactions(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> StockTransaction.builder()
+                        .accountNumber(ACCOUNT_NUMBER)
+                        .timestamp(FROM.plusSeconds(i))
+                        .ticker("APPL")
+                        .tradeAction(TradeAction.BUY)
+                        .unit(10 + i)
+                        .unitPrice(new BigDecimal("66.5"))
+                        .build())
+                .toList();
+    }
+
+    private static StockTransactionKey toKey(StockTransaction transaction) {
+        return StockTransactionKey.builder()
+                .accountNumber(transaction.getAccountNumber())
+                .timestamp(transaction.getTimestamp())
+                .build();
+    }
+}
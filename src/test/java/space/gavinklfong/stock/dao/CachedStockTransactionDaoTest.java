@@ -0,0 +1,117 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.gavinklfong.stock.config.StockTransactionCacheProperties;
+import space.gavinklfong.stock.model.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CachedStockTransactionDaoTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final String OTHER_ACCOUNT_NUMBER = "10000001";
+
+    private final StockTransactionDao stockTransactionDao = mock(StockTransactionDao.class);
+    private final StockTransactionWriteListeners writeListeners = new StockTransactionWriteListeners();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CachedStockTransactionDao cachedStockTransactionDao;
+
+    @BeforeEach
+    void setUp() {
+        cachedStockTransactionDao = new CachedStockTransactionDao(stockTransactionDao,
+                new StockTransactionCacheProperties(), writeListeners, meterRegistry);
+
+        when(stockTransactionDao.findStockTransactionByAccountNumber(any(), anyInt(), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(0)));
+        when(stockTransactionDao.findStockTransactionByAccountNumberAndTradeAction(any(), any(), anyInt(), any()))
+                .thenAnswer(invocation -> page(invocation.getArgument(0)));
+    }
+
+    @Test
+    void repeatedPageLookupIsServedFromCache() {
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+
+        verify(stockTransactionDao, times(1)).findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void pageSizeAndTradeActionArePartOfTheKey() {
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 20, null);
+        cachedStockTransactionDao.findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, null);
+
+        verify(stockTransactionDao).findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        verify(stockTransactionDao).findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 20, null);
+        verify(stockTransactionDao).findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, null);
+    }
+
+    @Test
+    void writeInvalidatesOnlyTheAccountWritten() {
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(OTHER_ACCOUNT_NUMBER, 10, null);
+
+        writeListeners.written(stockTransaction(ACCOUNT_NUMBER));
+
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        cachedStockTransactionDao.findStockTransactionByAccountNumber(OTHER_ACCOUNT_NUMBER, 10, null);
+
+        verify(stockTransactionDao, times(2)).findStockTransactionByAccountNumber(eq(ACCOUNT_NUMBER), eq(10), any());
+        verify(stockTransactionDao, times(1)).findStockTransactionByAccountNumber(eq(OTHER_ACCOUNT_NUMBER), eq(10), any());
+    }
+
+    @Test
+    void concurrentMissesLoadThePageOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return page(ACCOUNT_NUMBER);
+        });
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> first = executor.submit(() -> cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null));
+            loading.await();
+            Future<?> second = executor.submit(() -> cachedStockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null));
+            release.countDown();
+            first.get();
+            second.get();
+        }
+
+        verify(stockTransactionDao, times(1)).findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+    }
+
+    private static QueryResultPage<StockTransaction, StockTransactionKey> page(String accountNumber) {
+        return QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                .results(List.of(stockTransaction(accountNumber)))
+                .build();
+    }
+
+    private static StockTransaction stockTransaction(String accountNumber) {
+        return StockTransaction.builder()
+                .accountNumber(accountNumber)
+                .timestamp(Instant.parse("2022-01-01T00:00:00.084Z"))
+                .ticker("APPL")
+                .tradeAction(TradeAction.BUY)
+                .unit(451)
+                .unitPrice(new BigDecimal("66.542503"))
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.gavinklfong.stock.config.StockTransactionTickerCacheProperties;
+import space.gavinklfong.stock.model.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class CachedTickerStockTransactionDaoTest {
+
+    private static final Instant JANUARY = Instant.parse("2022-01-01T00:00:00Z");
+    private static final Instant FEBRUARY = Instant.parse("2022-02-01T00:00:00Z");
+    private static final Instant MARCH = Instant.parse("2022-03-01T00:00:00Z");
+
+    private final StockTransactionDao stockTransactionDao = mock(StockTransactionDao.class);
+    private final StockTransactionWriteListeners writeListeners = new StockTransactionWriteListeners();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CachedTickerStockTransactionDao cachedDao;
+
+    @BeforeEach
+    void setUp() {
+        cachedDao = new CachedTickerStockTransactionDao(stockTransactionDao,
+                new StockTransactionTickerCacheProperties(), writeListeners, meterRegistry);
+
+        when(stockTransactionDao.findStockTransactionByTickerWithTimeRange(any(), any(), any(), anyInt(), any()))
+                .thenAnswer(invocation -> QueryResultPage.<StockTransaction, StockTransactionKey>builder()
+                        .results(List.of(stockTransaction(invocation.getArgument(0), invocation.getArgument(1))))
+                        .build());
+    }
+
+    @Test
+    void repeatedSweepIsServedFromCache() {
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+
+        verify(stockTransactionDao, times(1)).findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CachedTickerStockTransactionDao.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void writeInvalidatesOnlyWindowsOfTheTickerCoveringIt() {
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", FEBRUARY.plusSeconds(1), MARCH, 100, null);
+        cachedDao.findStockTransactionByTickerWithTimeRange("MSFT", JANUARY, FEBRUARY, 100, null);
+
+        writeListeners.written(stockTransaction("APPL", JANUARY.plusSeconds(60)));
+
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+        cachedDao.findStockTransactionByTickerWithTimeRange("APPL", FEBRUARY.plusSeconds(1), MARCH, 100, null);
+        cachedDao.findStockTransactionByTickerWithTimeRange("MSFT", JANUARY, FEBRUARY, 100, null);
+
+        verify(stockTransactionDao, times(2)).findStockTransactionByTickerWithTimeRange("APPL", JANUARY, FEBRUARY, 100, null);
+        verify(stockTransactionDao, times(1)).findStockTransactionByTickerWithTimeRange("APPL", FEBRUARY.plusSeconds(1), MARCH, 100, null);
+        verify(stockTransactionDao, times(1)).findStockTransactionByTickerWithTimeRange("MSFT", JANUARY, FEBRUARY, 100, null);
+    }
+
+    private static StockTransaction stockTransaction(String ticker, Instant timestamp) {
+        return StockTransaction.builder()
+                .accountNumber("91245776")
+                .timestamp(timestamp)
+                .ticker(ticker)
+                .tradeAction(TradeAction.BUY)
+                .unit(451)
+                .unitPrice(new BigDecimal("66.542503"))
+                .build();
+    }
+}
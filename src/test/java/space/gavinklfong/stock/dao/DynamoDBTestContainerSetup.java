@@ -7,6 +7,7 @@ import org.testcontainers.utility.DockerImageName;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
 import java.net.URI;
@@ -30,4 +31,11 @@ public class DynamoDBTestContainerSetup {
                 .endpointOverride(URI.create(String.format("http://localhost:%d", DYNAMODB_CONTAINER.getMappedPort(8000))))
                 .build();
 
+    public static DynamoDbAsyncClient DYNAMO_DB_ASYNC_CLIENT = DynamoDbAsyncClient.builder()
+                .region(Region.US_EAST_2)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("dummy", "dummy")))
+                .endpointOverride(URI.create(String.format("http://localhost:%d", DYNAMODB_CONTAINER.getMappedPort(8000))))
+                .build();
+
 }
@@ -0,0 +1,713 @@
+package space.gavinklfong.stock.dao;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static space.gavinklfong.stock.dao.InMemoryExpressions.*;
+
+/**
+ * A {@link DynamoDbClient} that keeps its tables in memory, for DAO tests and load simulations that need to start
+ * in milliseconds and run far more requests than DynamoDB Local can serve.
+ * <p>
+ * Each table is a skip list of partitions, each partition a skip list of items ordered by sort key, so queries
+ * seek straight to their key range. Global secondary indexes are kept the same way, projecting all attributes.
+ * Supported are CreateTable, DeleteTable, DescribeTable, PutItem, GetItem, DeleteItem, UpdateItem, Query, Scan,
+ * BatchWriteItem and TransactWriteItems, with the expressions of {@link InMemoryExpressions}, Limit,
+ * ExclusiveStartKey, ScanIndexForward and parallel scan segments. Pages end at Limit only, not at 1 MB, and
+ * consumed capacity is estimated from item sizes. Writes are serialized, reads run concurrently with them.
+ */
+public class InMemoryDynamoDbClient implements DynamoDbClient {
+
+    private static final double READ_UNIT_BYTES = 4_096;
+    private static final double WRITE_UNIT_BYTES = 1_024;
+
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public DynamoDbWaiter waiter() {
+        return DynamoDbWaiter.builder().client(this).build();
+    }
+
+    @Override
+    public CreateTableResponse createTable(CreateTableRequest request) {
+        synchronized (writeLock) {
+            if (tables.containsKey(request.tableName())) {
+                throw ResourceInUseException.builder().message("Table already exists: " + request.tableName()).build();
+            }
+            List<KeySchema> indexes = request.globalSecondaryIndexes().stream()
+                    .map(index -> KeySchema.of(index.indexName(), index.keySchema()))
+                    .toList();
+            Table table = new Table(request.tableName(), KeySchema.of(null, request.keySchema()), indexes);
+            tables.put(table.name, table);
+            return CreateTableResponse.builder()
+                    .tableDescription(table.describe())
+                    .build();
+        }
+    }
+
+    @Override
+    public DeleteTableResponse deleteTable(DeleteTableRequest request) {
+        synchronized (writeLock) {
+            Table table = table(request.tableName());
+            tables.remove(table.name);
+            return DeleteTableResponse.builder()
+                    .tableDescription(table.describe())
+                    .build();
+        }
+    }
+
+    @Override
+    public DescribeTableResponse describeTable(DescribeTableRequest request) {
+        return DescribeTableResponse.builder()
+                .table(table(request.tableName()).describe())
+                .build();
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        Table table = table(request.tableName());
+        synchronized (writeLock) {
+            Map<String, AttributeValue> existing = table.get(table.keyOf(request.item()));
+            checkCondition(request.conditionExpression(), request.expressionAttributeNames(),
+                    request.expressionAttributeValues(), existing);
+            table.put(request.item());
+        }
+        PutItemResponse.Builder response = PutItemResponse.builder();
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, writeUnits(request.item())));
+        }
+        return response.build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> item = table.get(table.keyOf(request.key()));
+        GetItemResponse.Builder response = GetItemResponse.builder();
+        if (nonNull(item)) {
+            response.item(project(item, request.projectionExpression(), request.expressionAttributeNames()));
+        }
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, readUnits(nonNull(item) ? sizeOf(item) : 0)));
+        }
+        return response.build();
+    }
+
+    @Override
+    public DeleteItemResponse deleteItem(DeleteItemRequest request) {
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> existing;
+        synchronized (writeLock) {
+            existing = table.get(table.keyOf(request.key()));
+            checkCondition(request.conditionExpression(), request.expressionAttributeNames(),
+                    request.expressionAttributeValues(), existing);
+            table.delete(request.key());
+        }
+        DeleteItemResponse.Builder response = DeleteItemResponse.builder();
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, writeUnits(nonNull(existing) ? existing : request.key())));
+        }
+        return response.build();
+    }
+
+    @Override
+    public UpdateItemResponse updateItem(UpdateItemRequest request) {
+        Table table = table(request.tableName());
+        Map<String, AttributeValue> updated;
+        synchronized (writeLock) {
+            updated = update(table, request.key(), request.updateExpression(), request.conditionExpression(),
+                    request.expressionAttributeNames(), request.expressionAttributeValues());
+        }
+        UpdateItemResponse.Builder response = UpdateItemResponse.builder();
+        if (request.returnValues() == ReturnValue.ALL_NEW) {
+            response.attributes(updated);
+        }
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, writeUnits(updated)));
+        }
+        return response.build();
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        Table table = table(request.tableName());
+        KeySchema schema = isNull(request.indexName()) ? table.schema : table.index(request.indexName());
+
+        Node keyCondition = parseCondition(request.keyConditionExpression(), request.expressionAttributeNames(),
+                request.expressionAttributeValues());
+        AttributeValue hashValue = null;
+        Node rangeCondition = null;
+        for (Node term : conjunctionOf(keyCondition)) {
+            if (term instanceof Comparison comparison && comparison.operator().equals("=")
+                    && comparison.left() instanceof Path path && path.attribute().equals(schema.hashKey)
+                    && comparison.right() instanceof Value value) {
+                hashValue = value.value();
+            } else if (isNull(rangeCondition)) {
+                rangeCondition = term;
+            } else {
+                throw validation("key condition supports one sort key condition: " + request.keyConditionExpression());
+            }
+        }
+        if (isNull(hashValue)) {
+            throw validation("key condition must have an equality on " + schema.hashKey);
+        }
+
+        NavigableMap<List<SortKey>, Map<String, AttributeValue>> items = table.partition(schema, hashValue);
+        items = narrow(items, schema, rangeCondition);
+        boolean forward = !Boolean.FALSE.equals(request.scanIndexForward());
+        if (request.hasExclusiveStartKey()) {
+            List<SortKey> start = schema.positionOf(request.exclusiveStartKey(), table.schema);
+            items = forward ? items.tailMap(start, false) : items.headMap(start, false);
+        }
+        if (!forward) {
+            items = items.descendingMap();
+        }
+
+        Node filter = isNull(request.filterExpression()) ? null : parseCondition(request.filterExpression(),
+                request.expressionAttributeNames(), request.expressionAttributeValues());
+        Node finalRangeCondition = rangeCondition;
+        Page page = page(items.values(), request.limit(),
+                item -> isNull(finalRangeCondition) || finalRangeCondition.test(item),
+                filter, request.projectionExpression(), request.expressionAttributeNames());
+
+        QueryResponse.Builder response = QueryResponse.builder()
+                .items(page.items)
+                .count(page.items.size())
+                .scannedCount(page.scannedCount);
+        if (nonNull(page.last)) {
+            response.lastEvaluatedKey(schema.lastEvaluatedKeyOf(page.last, table.schema));
+        }
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, readUnits(page.scannedBytes)));
+        }
+        return response.build();
+    }
+
+    @Override
+    public ScanResponse scan(ScanRequest request) {
+        Table table = table(request.tableName());
+        KeySchema schema = isNull(request.indexName()) ? table.schema : table.index(request.indexName());
+        int totalSegments = isNull(request.totalSegments()) ? 1 : request.totalSegments();
+        int segment = isNull(request.segment()) ? 0 : request.segment();
+
+        SortKey firstHash = request.hasExclusiveStartKey()
+                ? SortKey.of(request.exclusiveStartKey().get(schema.hashKey))
+                : null;
+        List<SortKey> firstPosition = request.hasExclusiveStartKey()
+                ? schema.positionOf(request.exclusiveStartKey(), table.schema)
+                : null;
+        NavigableMap<SortKey, ConcurrentSkipListMap<List<SortKey>, Map<String, AttributeValue>>> partitions =
+                isNull(firstHash) ? table.partitions(schema) : table.partitions(schema).tailMap(firstHash, true);
+
+        Iterable<Map<String, AttributeValue>> items = () -> partitions.entrySet().stream()
+                .filter(partition -> Math.floorMod(partition.getKey().hashCode(), totalSegments) == segment)
+                .flatMap(partition -> (partition.getKey().equals(firstHash)
+                        ? partition.getValue().tailMap(firstPosition, false)
+                        : partition.getValue()).values().stream())
+                .iterator();
+
+        Node filter = isNull(request.filterExpression()) ? null : parseCondition(request.filterExpression(),
+                request.expressionAttributeNames(), request.expressionAttributeValues());
+        Page page = page(items, request.limit(), item -> true, filter, request.projectionExpression(),
+                request.expressionAttributeNames());
+
+        ScanResponse.Builder response = ScanResponse.builder()
+                .items(page.items)
+                .count(page.items.size())
+                .scannedCount(page.scannedCount);
+        if (nonNull(page.last)) {
+            response.lastEvaluatedKey(schema.lastEvaluatedKeyOf(page.last, table.schema));
+        }
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(capacity(table.name, readUnits(page.scannedBytes)));
+        }
+        return response.build();
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        Map<String, Double> units = new LinkedHashMap<>();
+        synchronized (writeLock) {
+            request.requestItems().forEach((tableName, writes) -> {
+                Table table = table(tableName);
+                Set<List<SortKey>> keys = new HashSet<>();
+                for (WriteRequest write : writes) {
+                    Map<String, AttributeValue> item = nonNull(write.putRequest())
+                            ? write.putRequest().item()
+                            : write.deleteRequest().key();
+                    if (!keys.add(table.keyOf(item))) {
+                        throw validation("Provided list of item keys contains duplicates");
+                    }
+                }
+            });
+            request.requestItems().forEach((tableName, writes) -> {
+                Table table = table(tableName);
+                for (WriteRequest write : writes) {
+                    if (nonNull(write.putRequest())) {
+                        table.put(write.putRequest().item());
+                        units.merge(tableName, writeUnits(write.putRequest().item()), Double::sum);
+                    } else {
+                        table.delete(write.deleteRequest().key());
+                        units.merge(tableName, writeUnits(write.deleteRequest().key()), Double::sum);
+                    }
+                }
+            });
+        }
+        BatchWriteItemResponse.Builder response = BatchWriteItemResponse.builder()
+                .unprocessedItems(Map.of());
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(units.entrySet().stream()
+                    .map(entry -> capacity(entry.getKey(), entry.getValue()))
+                    .toList());
+        }
+        return response.build();
+    }
+
+    @Override
+    public TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        Map<String, Double> units = new LinkedHashMap<>();
+        synchronized (writeLock) {
+            List<CancellationReason> reasons = new ArrayList<>();
+            Set<List<Object>> touched = new HashSet<>();
+            boolean cancelled = false;
+
+            for (TransactWriteItem write : request.transactItems()) {
+                TransactionalWrite operation = TransactionalWrite.of(write);
+                Table table = table(operation.tableName());
+                if (!touched.add(List.of(table.name, table.keyOf(operation.key())))) {
+                    throw validation("Transaction request cannot include multiple operations on one item");
+                }
+                Map<String, AttributeValue> existing = table.get(table.keyOf(operation.key()));
+                boolean passed = isNull(operation.conditionExpression()) || parseCondition(operation.conditionExpression(),
+                        operation.names(), operation.values()).test(nonNull(existing) ? existing : Map.of());
+                cancelled |= !passed;
+                reasons.add(passed
+                        ? CancellationReason.builder().code("None").build()
+                        : CancellationReason.builder().code("ConditionalCheckFailed").message("The conditional request failed").build());
+            }
+
+            if (cancelled) {
+                String message = "Transaction cancelled, please refer cancellation reasons for specific reasons "
+                        + reasons.stream().map(CancellationReason::code).toList();
+                throw TransactionCanceledException.builder()
+                        .message(message)
+                        .cancellationReasons(reasons)
+                        .build();
+            }
+
+            for (TransactWriteItem write : request.transactItems()) {
+                if (nonNull(write.put())) {
+                    Table table = table(write.put().tableName());
+                    table.put(write.put().item());
+                    units.merge(table.name, 2 * writeUnits(write.put().item()), Double::sum);
+                } else if (nonNull(write.update())) {
+                    Table table = table(write.update().tableName());
+                    Map<String, AttributeValue> updated = update(table, write.update().key(), write.update().updateExpression(),
+                            null, write.update().expressionAttributeNames(), write.update().expressionAttributeValues());
+                    units.merge(table.name, 2 * writeUnits(updated), Double::sum);
+                } else if (nonNull(write.delete())) {
+                    Table table = table(write.delete().tableName());
+                    table.delete(write.delete().key());
+                    units.merge(table.name, 2 * writeUnits(write.delete().key()), Double::sum);
+                }
+            }
+        }
+        TransactWriteItemsResponse.Builder response = TransactWriteItemsResponse.builder();
+        if (wantsCapacity(request.returnConsumedCapacity())) {
+            response.consumedCapacity(units.entrySet().stream()
+                    .map(entry -> capacity(entry.getKey(), entry.getValue()))
+                    .toList());
+        }
+        return response.build();
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            tables.clear();
+        }
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get(tableName);
+        if (isNull(table)) {
+            throw ResourceNotFoundException.builder()
+                    .message("Cannot do operations on a non-existent table: " + tableName)
+                    .build();
+        }
+        return table;
+    }
+
+    // callers hold the write lock
+    private Map<String, AttributeValue> update(Table table, Map<String, AttributeValue> key, String updateExpression,
+                                               String conditionExpression, Map<String, String> names,
+                                               Map<String, AttributeValue> values) {
+        Map<String, AttributeValue> existing = table.get(table.keyOf(key));
+        checkCondition(conditionExpression, names, values, existing);
+        Map<String, AttributeValue> item = new HashMap<>(nonNull(existing) ? existing : key);
+        parseUpdate(updateExpression, names, values).forEach(action -> action.apply(item));
+        table.put(item);
+        return item;
+    }
+
+    private static void checkCondition(String conditionExpression, Map<String, String> names,
+                                       Map<String, AttributeValue> values, Map<String, AttributeValue> existing) {
+        if (nonNull(conditionExpression)
+                && !parseCondition(conditionExpression, names, values).test(nonNull(existing) ? existing : Map.of())) {
+            throw ConditionalCheckFailedException.builder().message("The conditional request failed").build();
+        }
+    }
+
+    // the key condition on the sort key, where it is a single comparison, narrows the partition to a sub map
+    private static NavigableMap<List<SortKey>, Map<String, AttributeValue>> narrow(
+            NavigableMap<List<SortKey>, Map<String, AttributeValue>> items, KeySchema schema, Node rangeCondition) {
+        if (isNull(rangeCondition) || isNull(schema.rangeKey)) {
+            return items;
+        }
+        if (rangeCondition instanceof Between between && between.operand() instanceof Path path
+                && path.attribute().equals(schema.rangeKey)
+                && between.lower() instanceof Value lower && between.upper() instanceof Value upper) {
+            return items.subMap(List.of(SortKey.of(lower.value())), true,
+                    List.of(SortKey.of(upper.value()), SortKey.MAX), true);
+        }
+        if (rangeCondition instanceof Comparison comparison && comparison.left() instanceof Path path
+                && path.attribute().equals(schema.rangeKey) && comparison.right() instanceof Value value) {
+            SortKey bound = SortKey.of(value.value());
+            return switch (comparison.operator()) {
+                case "=" -> items.subMap(List.of(bound), true, List.of(bound, SortKey.MAX), true);
+                case "<" -> items.headMap(List.of(bound), false);
+                case "<=" -> items.headMap(List.of(bound, SortKey.MAX), true);
+                case ">" -> items.tailMap(List.of(bound, SortKey.MAX), false);
+                case ">=" -> items.tailMap(List.of(bound), true);
+                default -> throw validation("unsupported sort key comparator: " + comparison.operator());
+            };
+        }
+        if (rangeCondition instanceof InMemoryExpressions.Function function && function.name().equals("begins_with")
+                && function.arguments().get(0) instanceof Path path && path.attribute().equals(schema.rangeKey)
+                && function.arguments().get(1) instanceof Value prefix) {
+            return items.subMap(List.of(SortKey.of(prefix.value())), true,
+                    List.of(SortKey.of(AttributeValue.fromS(prefix.value().s() + Character.MAX_VALUE)), SortKey.MAX), true);
+        }
+        throw validation("unsupported sort key condition: " + rangeCondition);
+    }
+
+    private static Page page(Iterable<Map<String, AttributeValue>> items, Integer limit,
+                             Predicate<Map<String, AttributeValue>> keyCondition, Node filter,
+                             String projectionExpression, Map<String, String> names) {
+        List<Map<String, AttributeValue>> results = new ArrayList<>();
+        int scannedCount = 0;
+        long scannedBytes = 0;
+        Map<String, AttributeValue> last = null;
+
+        for (Map<String, AttributeValue> item : items) {
+            if (!keyCondition.test(item)) {
+                continue;
+            }
+            scannedCount++;
+            scannedBytes += sizeOf(item);
+            if (isNull(filter) || filter.test(item)) {
+                results.add(project(item, projectionExpression, names));
+            }
+            if (nonNull(limit) && scannedCount == limit) {
+                last = item;
+                break;
+            }
+        }
+        return new Page(results, scannedCount, scannedBytes, last);
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, String projectionExpression,
+                                                       Map<String, String> names) {
+        if (isNull(projectionExpression)) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<>();
+        parseProjection(projectionExpression, names).forEach(attribute -> {
+            if (item.containsKey(attribute)) {
+                projected.put(attribute, item.get(attribute));
+            }
+        });
+        return projected;
+    }
+
+    private static boolean wantsCapacity(ReturnConsumedCapacity returnConsumedCapacity) {
+        return nonNull(returnConsumedCapacity) && returnConsumedCapacity != ReturnConsumedCapacity.NONE;
+    }
+
+    private static ConsumedCapacity capacity(String tableName, double units) {
+        return ConsumedCapacity.builder()
+                .tableName(tableName)
+                .capacityUnits(units)
+                .build();
+    }
+
+    // eventually consistent reads cost half a unit per 4 KB read
+    private static double readUnits(long bytes) {
+        return Math.max(1, Math.ceil(bytes / READ_UNIT_BYTES)) / 2;
+    }
+
+    private static double writeUnits(Map<String, AttributeValue> item) {
+        return Math.max(1, Math.ceil(sizeOf(item) / WRITE_UNIT_BYTES));
+    }
+
+    private static long sizeOf(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            AttributeValue value = entry.getValue();
+            size += entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            size += nonNull(value.s()) ? value.s().getBytes(StandardCharsets.UTF_8).length
+                    : nonNull(value.n()) ? value.n().length() / 2 + 1
+                    : nonNull(value.b()) ? value.b().asByteArray().length
+                    : value.toString().length();
+        }
+        return size;
+    }
+
+    private record Page(List<Map<String, AttributeValue>> items, int scannedCount, long scannedBytes,
+                        Map<String, AttributeValue> last) {
+    }
+
+    private record TransactionalWrite(String tableName, Map<String, AttributeValue> key, String conditionExpression,
+                                      Map<String, String> names, Map<String, AttributeValue> values) {
+
+        static TransactionalWrite of(TransactWriteItem write) {
+            if (nonNull(write.put())) {
+                Put put = write.put();
+                return new TransactionalWrite(put.tableName(), put.item(), put.conditionExpression(),
+                        put.expressionAttributeNames(), put.expressionAttributeValues());
+            }
+            if (nonNull(write.update())) {
+                Update update = write.update();
+                return new TransactionalWrite(update.tableName(), update.key(), update.conditionExpression(),
+                        update.expressionAttributeNames(), update.expressionAttributeValues());
+            }
+            if (nonNull(write.delete())) {
+                Delete delete = write.delete();
+                return new TransactionalWrite(delete.tableName(), delete.key(), delete.conditionExpression(),
+                        delete.expressionAttributeNames(), delete.expressionAttributeValues());
+            }
+            ConditionCheck check = write.conditionCheck();
+            return new TransactionalWrite(check.tableName(), check.key(), check.conditionExpression(),
+                    check.expressionAttributeNames(), check.expressionAttributeValues());
+        }
+    }
+
+    /**
+     * A key attribute value in sort order: numbers by value, strings by their characters. {@link #MAX} sorts after
+     * every value, so {@code [value, MAX]} bounds all index entries whose sort key is {@code value}.
+     */
+    record SortKey(String s, BigDecimal n, boolean max) implements Comparable<SortKey> {
+
+        static final SortKey NONE = new SortKey("", null, false);
+        static final SortKey MAX = new SortKey(null, null, true);
+
+        static SortKey of(AttributeValue value) {
+            if (isNull(value)) {
+                throw validation("missing key attribute");
+            }
+            if (nonNull(value.s())) {
+                return new SortKey(value.s(), null, false);
+            }
+            if (nonNull(value.n())) {
+                return new SortKey(null, new BigDecimal(value.n()).stripTrailingZeros(), false);
+            }
+            throw validation("key attributes must be strings or numbers: " + value);
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (max || other.max) {
+                return Boolean.compare(max, other.max);
+            }
+            if (nonNull(n) && nonNull(other.n)) {
+                return n.compareTo(other.n);
+            }
+            if (nonNull(s) && nonNull(other.s)) {
+                return s.compareTo(other.s);
+            }
+            return nonNull(s) ? -1 : 1;
+        }
+    }
+
+    private static final Comparator<List<SortKey>> POSITION_ORDER = (left, right) -> {
+        for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+            int order = left.get(i).compareTo(right.get(i));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(left.size(), right.size());
+    };
+
+    /**
+     * Key attributes of a table or index. Items of a partition are ordered by their position: the sort key for a
+     * table, and the index sort key followed by the table key for an index, which keeps index entries unique.
+     */
+    private record KeySchema(String indexName, String hashKey, String rangeKey) {
+
+        static KeySchema of(String indexName, List<KeySchemaElement> elements) {
+            String hashKey = null;
+            String rangeKey = null;
+            for (KeySchemaElement element : elements) {
+                if (element.keyType() == KeyType.HASH) {
+                    hashKey = element.attributeName();
+                } else {
+                    rangeKey = element.attributeName();
+                }
+            }
+            return new KeySchema(indexName, hashKey, rangeKey);
+        }
+
+        boolean covers(Map<String, AttributeValue> item) {
+            return item.containsKey(hashKey) && (isNull(rangeKey) || item.containsKey(rangeKey));
+        }
+
+        List<SortKey> positionOf(Map<String, AttributeValue> item, KeySchema tableSchema) {
+            SortKey range = isNull(rangeKey) ? SortKey.NONE : SortKey.of(item.get(rangeKey));
+            if (isNull(indexName)) {
+                return List.of(range);
+            }
+            return List.of(range, SortKey.of(item.get(tableSchema.hashKey)),
+                    isNull(tableSchema.rangeKey) ? SortKey.NONE : SortKey.of(item.get(tableSchema.rangeKey)));
+        }
+
+        Map<String, AttributeValue> lastEvaluatedKeyOf(Map<String, AttributeValue> item, KeySchema tableSchema) {
+            Map<String, AttributeValue> key = new HashMap<>();
+            for (String attribute : Arrays.asList(hashKey, rangeKey, tableSchema.hashKey, tableSchema.rangeKey)) {
+                if (nonNull(attribute)) {
+                    key.put(attribute, item.get(attribute));
+                }
+            }
+            return key;
+        }
+    }
+
+    private static final class Table {
+
+        private final String name;
+        private final KeySchema schema;
+        private final Map<String, KeySchema> indexes = new LinkedHashMap<>();
+        private final Map<KeySchema, ConcurrentSkipListMap<SortKey, ConcurrentSkipListMap<List<SortKey>, Map<String, AttributeValue>>>> data =
+                new HashMap<>();
+
+        Table(String name, KeySchema schema, List<KeySchema> indexes) {
+            this.name = name;
+            this.schema = schema;
+            data.put(schema, new ConcurrentSkipListMap<>());
+            indexes.forEach(index -> {
+                this.indexes.put(index.indexName(), index);
+                data.put(index, new ConcurrentSkipListMap<>());
+            });
+        }
+
+        KeySchema index(String indexName) {
+            KeySchema index = indexes.get(indexName);
+            if (isNull(index)) {
+                throw validation("The table does not have the specified index: " + indexName);
+            }
+            return index;
+        }
+
+        NavigableMap<SortKey, ConcurrentSkipListMap<List<SortKey>, Map<String, AttributeValue>>> partitions(KeySchema keySchema) {
+            return data.get(keySchema);
+        }
+
+        NavigableMap<List<SortKey>, Map<String, AttributeValue>> partition(KeySchema keySchema, AttributeValue hashValue) {
+            NavigableMap<List<SortKey>, Map<String, AttributeValue>> partition = data.get(keySchema).get(SortKey.of(hashValue));
+            return isNull(partition) ? new ConcurrentSkipListMap<>(POSITION_ORDER) : partition;
+        }
+
+        List<SortKey> keyOf(Map<String, AttributeValue> item) {
+            return List.of(SortKey.of(item.get(schema.hashKey)),
+                    isNull(schema.rangeKey) ? SortKey.NONE : SortKey.of(item.get(schema.rangeKey)));
+        }
+
+        Map<String, AttributeValue> get(List<SortKey> key) {
+            ConcurrentSkipListMap<List<SortKey>, Map<String, AttributeValue>> partition = data.get(schema).get(key.get(0));
+            return isNull(partition) ? null : partition.get(List.of(key.get(1)));
+        }
+
+        // callers hold the write lock
+        void put(Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> stored = normalize(item);
+            delete(stored);
+            data.forEach((keySchema, partitions) -> {
+                if (keySchema.covers(stored)) {
+                    partitions.computeIfAbsent(SortKey.of(stored.get(keySchema.hashKey)),
+                                    hash -> new ConcurrentSkipListMap<>(POSITION_ORDER))
+                            .put(keySchema.positionOf(stored, schema), stored);
+                }
+            });
+        }
+
+        // callers hold the write lock
+        void delete(Map<String, AttributeValue> key) {
+            Map<String, AttributeValue> existing = get(keyOf(key));
+            if (isNull(existing)) {
+                return;
+            }
+            data.forEach((keySchema, partitions) -> {
+                if (keySchema.covers(existing)) {
+                    SortKey hash = SortKey.of(existing.get(keySchema.hashKey));
+                    ConcurrentSkipListMap<List<SortKey>, Map<String, AttributeValue>> partition = partitions.get(hash);
+                    partition.remove(keySchema.positionOf(existing, schema));
+                    if (partition.isEmpty()) {
+                        partitions.remove(hash);
+                    }
+                }
+            });
+        }
+
+        TableDescription describe() {
+            long itemCount = data.get(schema).values().stream().mapToLong(Map::size).sum();
+            return TableDescription.builder()
+                    .tableName(name)
+                    .tableStatus(TableStatus.ACTIVE)
+                    .itemCount(itemCount)
+                    .keySchema(keySchemaElements(schema))
+                    .globalSecondaryIndexes(indexes.values().stream()
+                            .map(index -> GlobalSecondaryIndexDescription.builder()
+                                    .indexName(index.indexName())
+                                    .indexStatus(IndexStatus.ACTIVE)
+                                    .keySchema(keySchemaElements(index))
+                                    .build())
+                            .toList())
+                    .build();
+        }
+
+        private static List<KeySchemaElement> keySchemaElements(KeySchema keySchema) {
+            List<KeySchemaElement> elements = new ArrayList<>();
+            elements.add(KeySchemaElement.builder().attributeName(keySchema.hashKey()).keyType(KeyType.HASH).build());
+            if (nonNull(keySchema.rangeKey())) {
+                elements.add(KeySchemaElement.builder().attributeName(keySchema.rangeKey()).keyType(KeyType.RANGE).build());
+            }
+            return elements;
+        }
+
+        // numbers are stored the way DynamoDB returns them, without trailing zeros
+        private static Map<String, AttributeValue> normalize(Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> normalized = new HashMap<>(item);
+            normalized.replaceAll((attribute, value) -> nonNull(value.n()) ? number(new BigDecimal(value.n())) : value);
+            return Collections.unmodifiableMap(normalized);
+        }
+    }
+}
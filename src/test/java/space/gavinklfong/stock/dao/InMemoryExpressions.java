@@ -0,0 +1,485 @@
+package space.gavinklfong.stock.dao;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Parser and evaluator for the DynamoDB expression subset used by {@link InMemoryDynamoDbClient}: conditions with
+ * comparisons, BETWEEN, IN, AND, OR, NOT, parentheses and the attribute_exists, attribute_not_exists, begins_with
+ * and contains functions; SET, ADD and REMOVE update actions; and projections of top-level attributes.
+ * Document paths (nested attributes and list elements) are not supported.
+ */
+final class InMemoryExpressions {
+
+    private InMemoryExpressions() {
+    }
+
+    interface Node {
+        boolean test(Map<String, AttributeValue> item);
+    }
+
+    sealed interface Operand {
+        AttributeValue resolve(Map<String, AttributeValue> item);
+    }
+
+    record Path(String attribute) implements Operand {
+        @Override
+        public AttributeValue resolve(Map<String, AttributeValue> item) {
+            return item.get(attribute);
+        }
+    }
+
+    record Value(AttributeValue value) implements Operand {
+        @Override
+        public AttributeValue resolve(Map<String, AttributeValue> item) {
+            return value;
+        }
+    }
+
+    // if_not_exists(path, operand) in a SET action
+    record IfNotExists(Path path, Operand fallback) implements Operand {
+        @Override
+        public AttributeValue resolve(Map<String, AttributeValue> item) {
+            AttributeValue current = path.resolve(item);
+            return nonNull(current) ? current : fallback.resolve(item);
+        }
+    }
+
+    record And(List<Node> terms) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return terms.stream().allMatch(term -> term.test(item));
+        }
+    }
+
+    record Or(List<Node> terms) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return terms.stream().anyMatch(term -> term.test(item));
+        }
+    }
+
+    record Not(Node term) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return !term.test(item);
+        }
+    }
+
+    record Comparison(Operand left, String operator, Operand right) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            AttributeValue l = left.resolve(item);
+            AttributeValue r = right.resolve(item);
+            if (isNull(l) || isNull(r)) {
+                return "<>".equals(operator);
+            }
+            if ("=".equals(operator) || "<>".equals(operator)) {
+                Integer order = compare(l, r);
+                boolean equal = nonNull(order) ? order == 0 : l.equals(r);
+                return "=".equals(operator) == equal;
+            }
+            Integer order = compare(l, r);
+            if (isNull(order)) {
+                return false;
+            }
+            return switch (operator) {
+                case "<" -> order < 0;
+                case "<=" -> order <= 0;
+                case ">" -> order > 0;
+                case ">=" -> order >= 0;
+                default -> throw validation("unsupported comparator: " + operator);
+            };
+        }
+    }
+
+    record Between(Operand operand, Operand lower, Operand upper) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            AttributeValue value = operand.resolve(item);
+            AttributeValue low = lower.resolve(item);
+            AttributeValue high = upper.resolve(item);
+            if (isNull(value) || isNull(low) || isNull(high)) {
+                return false;
+            }
+            Integer fromLow = compare(value, low);
+            Integer toHigh = compare(value, high);
+            return nonNull(fromLow) && nonNull(toHigh) && fromLow >= 0 && toHigh <= 0;
+        }
+    }
+
+    record In(Operand operand, List<Operand> candidates) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            return candidates.stream().anyMatch(candidate -> new Comparison(operand, "=", candidate).test(item));
+        }
+    }
+
+    record Function(String name, List<Operand> arguments) implements Node {
+        @Override
+        public boolean test(Map<String, AttributeValue> item) {
+            AttributeValue first = arguments.get(0).resolve(item);
+            return switch (name) {
+                case "attribute_exists" -> nonNull(first);
+                case "attribute_not_exists" -> isNull(first);
+                case "begins_with" -> {
+                    AttributeValue prefix = arguments.get(1).resolve(item);
+                    yield nonNull(first) && nonNull(first.s()) && nonNull(prefix) && first.s().startsWith(prefix.s());
+                }
+                case "contains" -> {
+                    AttributeValue operand = arguments.get(1).resolve(item);
+                    if (isNull(first) || isNull(operand)) {
+                        yield false;
+                    }
+                    if (nonNull(first.s())) {
+                        yield nonNull(operand.s()) && first.s().contains(operand.s());
+                    }
+                    if (first.hasSs()) {
+                        yield first.ss().contains(operand.s());
+                    }
+                    yield first.hasL() && first.l().contains(operand);
+                }
+                default -> throw validation("unsupported function: " + name);
+            };
+        }
+    }
+
+    sealed interface UpdateAction {
+        void apply(Map<String, AttributeValue> item);
+    }
+
+    record SetAction(Path path, Operand left, String operator, Operand right) implements UpdateAction {
+        @Override
+        public void apply(Map<String, AttributeValue> item) {
+            AttributeValue value = left.resolve(item);
+            if (nonNull(operator)) {
+                AttributeValue other = right.resolve(item);
+                if (isNull(value) || isNull(value.n()) || isNull(other) || isNull(other.n())) {
+                    throw validation("arithmetic on a missing or non-number operand of " + path.attribute());
+                }
+                BigDecimal result = "+".equals(operator)
+                        ? new BigDecimal(value.n()).add(new BigDecimal(other.n()))
+                        : new BigDecimal(value.n()).subtract(new BigDecimal(other.n()));
+                value = number(result);
+            }
+            if (isNull(value)) {
+                throw validation("missing value for " + path.attribute());
+            }
+            item.put(path.attribute(), value);
+        }
+    }
+
+    record AddAction(Path path, Operand operand) implements UpdateAction {
+        @Override
+        public void apply(Map<String, AttributeValue> item) {
+            AttributeValue delta = operand.resolve(item);
+            AttributeValue current = item.get(path.attribute());
+            if (nonNull(delta.n())) {
+                BigDecimal base = nonNull(current) ? new BigDecimal(current.n()) : BigDecimal.ZERO;
+                item.put(path.attribute(), number(base.add(new BigDecimal(delta.n()))));
+            } else if (delta.hasSs()) {
+                Collection<String> values = new LinkedHashSet<>(nonNull(current) ? current.ss() : List.of());
+                values.addAll(delta.ss());
+                item.put(path.attribute(), AttributeValue.fromSs(List.copyOf(values)));
+            } else {
+                throw validation("ADD supports numbers and string sets only: " + path.attribute());
+            }
+        }
+    }
+
+    record RemoveAction(Path path) implements UpdateAction {
+        @Override
+        public void apply(Map<String, AttributeValue> item) {
+            item.remove(path.attribute());
+        }
+    }
+
+    static Node parseCondition(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        Parser parser = new Parser(expression, names, values);
+        Node node = parser.parseOr();
+        parser.expectEnd();
+        return node;
+    }
+
+    static List<UpdateAction> parseUpdate(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+        Parser parser = new Parser(expression, names, values);
+        List<UpdateAction> actions = new ArrayList<>();
+        while (parser.hasMore()) {
+            String clause = parser.next().toUpperCase(Locale.ROOT);
+            do {
+                Path path = parser.parsePath();
+                switch (clause) {
+                    case "SET" -> {
+                        parser.expect("=");
+                        Operand left = parser.parseOperand();
+                        if (parser.peekIs("+") || parser.peekIs("-")) {
+                            String operator = parser.next();
+                            actions.add(new SetAction(path, left, operator, parser.parseOperand()));
+                        } else {
+                            actions.add(new SetAction(path, left, null, null));
+                        }
+                    }
+                    case "ADD" -> actions.add(new AddAction(path, parser.parseOperand()));
+                    case "REMOVE" -> actions.add(new RemoveAction(path));
+                    default -> throw validation("unsupported update clause: " + clause);
+                }
+            } while (parser.acceptComma());
+        }
+        return actions;
+    }
+
+    static List<String> parseProjection(String expression, Map<String, String> names) {
+        Parser parser = new Parser(expression, names, Map.of());
+        List<String> attributes = new ArrayList<>();
+        do {
+            attributes.add(parser.parsePath().attribute());
+        } while (parser.acceptComma());
+        parser.expectEnd();
+        return attributes;
+    }
+
+    // flattens the top level AND of a key condition
+    static List<Node> conjunctionOf(Node node) {
+        return node instanceof And and ? and.terms() : List.of(node);
+    }
+
+    /**
+     * Orders two scalar values of the same type, numbers by value and strings and binaries by their bytes;
+     * null when the values cannot be ordered.
+     */
+    static Integer compare(AttributeValue left, AttributeValue right) {
+        if (nonNull(left.n()) && nonNull(right.n())) {
+            return new BigDecimal(left.n()).compareTo(new BigDecimal(right.n()));
+        }
+        if (nonNull(left.s()) && nonNull(right.s())) {
+            return left.s().compareTo(right.s());
+        }
+        if (nonNull(left.b()) && nonNull(right.b())) {
+            return Arrays.compareUnsigned(left.b().asByteArray(), right.b().asByteArray());
+        }
+        return null;
+    }
+
+    static AttributeValue number(BigDecimal value) {
+        return AttributeValue.fromN(value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString());
+    }
+
+    static DynamoDbException validation(String message) {
+        return (DynamoDbException) DynamoDbException.builder()
+                .message(message)
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .errorCode("ValidationException")
+                        .errorMessage(message)
+                        .serviceName("DynamoDb")
+                        .build())
+                .build();
+    }
+
+    private static final class Parser {
+
+        private static final Set<String> FUNCTIONS =
+                Set.of("attribute_exists", "attribute_not_exists", "begins_with", "contains");
+
+        private final List<String> tokens;
+        private final Map<String, String> names;
+        private final Map<String, AttributeValue> values;
+        private int position;
+
+        Parser(String expression, Map<String, String> names, Map<String, AttributeValue> values) {
+            this.tokens = tokenize(expression);
+            this.names = isNull(names) ? Map.of() : names;
+            this.values = isNull(values) ? Map.of() : values;
+        }
+
+        Node parseOr() {
+            List<Node> terms = new ArrayList<>(List.of(parseAnd()));
+            while (acceptKeyword("OR")) {
+                terms.add(parseAnd());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node parseAnd() {
+            List<Node> terms = new ArrayList<>(List.of(parseNot()));
+            while (acceptKeyword("AND")) {
+                terms.add(parseNot());
+            }
+            return terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        private Node parseNot() {
+            if (acceptKeyword("NOT")) {
+                return new Not(parseNot());
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            if (peekIs("(")) {
+                next();
+                Node node = parseOr();
+                expect(")");
+                return node;
+            }
+            if (FUNCTIONS.contains(peek()) && "(".equals(peek(1))) {
+                String name = next();
+                next();
+                List<Operand> arguments = new ArrayList<>();
+                do {
+                    arguments.add(parseOperand());
+                } while (acceptComma());
+                expect(")");
+                return new Function(name, arguments);
+            }
+
+            Operand left = parseOperand();
+            if (acceptKeyword("BETWEEN")) {
+                Operand lower = parseOperand();
+                if (!acceptKeyword("AND")) {
+                    throw validation("BETWEEN without AND");
+                }
+                return new Between(left, lower, parseOperand());
+            }
+            if (acceptKeyword("IN")) {
+                expect("(");
+                List<Operand> candidates = new ArrayList<>();
+                do {
+                    candidates.add(parseOperand());
+                } while (acceptComma());
+                expect(")");
+                return new In(left, candidates);
+            }
+            String operator = next();
+            if (!Set.of("=", "<>", "<", "<=", ">", ">=").contains(operator)) {
+                throw validation("expected a comparator but found " + operator);
+            }
+            return new Comparison(left, operator, parseOperand());
+        }
+
+        Operand parseOperand() {
+            String token = peek();
+            if ("if_not_exists".equals(token) && "(".equals(peek(1))) {
+                next();
+                next();
+                Path path = parsePath();
+                expect(",");
+                Operand fallback = parseOperand();
+                expect(")");
+                return new IfNotExists(path, fallback);
+            }
+            if (token.startsWith(":")) {
+                next();
+                AttributeValue value = values.get(token);
+                if (isNull(value)) {
+                    throw validation("missing expression attribute value " + token);
+                }
+                return new Value(value);
+            }
+            return parsePath();
+        }
+
+        Path parsePath() {
+            String token = next();
+            if (token.startsWith("#")) {
+                String name = names.get(token);
+                if (isNull(name)) {
+                    throw validation("missing expression attribute name " + token);
+                }
+                return new Path(name);
+            }
+            if (!Character.isLetter(token.charAt(0))) {
+                throw validation("expected an attribute but found " + token);
+            }
+            return new Path(token);
+        }
+
+        boolean hasMore() {
+            return position < tokens.size();
+        }
+
+        void expectEnd() {
+            if (hasMore()) {
+                throw validation("unexpected token " + peek());
+            }
+        }
+
+        void expect(String token) {
+            String actual = next();
+            if (!token.equals(actual)) {
+                throw validation("expected " + token + " but found " + actual);
+            }
+        }
+
+        boolean acceptComma() {
+            if (peekIs(",")) {
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (hasMore() && keyword.equalsIgnoreCase(peek())) {
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        boolean peekIs(String token) {
+            return hasMore() && token.equals(peek());
+        }
+
+        private String peek() {
+            return peek(0);
+        }
+
+        private String peek(int ahead) {
+            return position + ahead < tokens.size() ? tokens.get(position + ahead) : "";
+        }
+
+        String next() {
+            if (!hasMore()) {
+                throw validation("unexpected end of expression");
+            }
+            return tokens.get(position++);
+        }
+
+        private static List<String> tokenize(String expression) {
+            List<String> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < expression.length()) {
+                char c = expression.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if ("(),=+-".indexOf(c) >= 0) {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if (c == '<' || c == '>') {
+                    char following = i + 1 < expression.length() ? expression.charAt(i + 1) : ' ';
+                    boolean pair = following == '=' || (c == '<' && following == '>');
+                    tokens.add(expression.substring(i, pair ? i + 2 : i + 1));
+                    i += pair ? 2 : 1;
+                } else if (Character.isLetterOrDigit(c) || c == '#' || c == ':' || c == '_') {
+                    int start = i;
+                    while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i))
+                            || "#:_".indexOf(expression.charAt(i)) >= 0)) {
+                        i++;
+                    }
+                    tokens.add(expression.substring(start, i));
+                } else {
+                    throw validation("unsupported character '" + c + "' in expression: " + expression);
+                }
+            }
+            return tokens;
+        }
+    }
+}
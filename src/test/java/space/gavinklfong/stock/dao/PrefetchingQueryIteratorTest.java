@@ -0,0 +1,101 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PrefetchingQueryIteratorTest {
+
+    @Test
+    void walksPagesByLastEvaluatedKey() {
+        List<Map<String, AttributeValue>> requestedStartKeys = new CopyOnWriteArrayList<>();
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            requestedStartKeys.add(exclusiveStartKey == null ? Map.of() : exclusiveStartKey);
+            int pageNumber = requestedStartKeys.size();
+            QueryResponse.Builder response = QueryResponse.builder()
+                    .items(List.of(Map.of("page", AttributeValue.fromN(String.valueOf(pageNumber)))));
+            if (pageNumber < 3) {
+                response.lastEvaluatedKey(Map.of("page", AttributeValue.fromN(String.valueOf(pageNumber))));
+            }
+            return response.build();
+        }, Runnable::run);
+
+        List<QueryResponse> responses = new ArrayList<>();
+        pages.forEachRemaining(responses::add);
+
+        assertThat(responses).hasSize(3);
+        assertThat(requestedStartKeys).containsExactly(
+                Map.of(),
+                Map.of("page", AttributeValue.fromN("1")),
+                Map.of("page", AttributeValue.fromN("2")));
+    }
+
+    @Test
+    void prefetchesNextPageBeforeCurrentPageIsConsumed() {
+        List<Integer> fetchedPages = new CopyOnWriteArrayList<>();
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            fetchedPages.add(fetchedPages.size() + 1);
+            return QueryResponse.builder()
+                    .items(List.of())
+                    .lastEvaluatedKey(Map.of("page", AttributeValue.fromN(String.valueOf(fetchedPages.size()))))
+                    .build();
+        }, Runnable::run);
+
+        pages.next();
+
+        assertThat(fetchedPages).containsExactly(1, 2);
+        pages.close();
+        assertThat(pages.hasNext()).isFalse();
+    }
+
+    @Test
+    void requestsFirstPageOnlyOnceIterationStarts() {
+        List<Integer> fetchedPages = new CopyOnWriteArrayList<>();
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            fetchedPages.add(fetchedPages.size() + 1);
+            return QueryResponse.builder().items(List.of()).build();
+        }, Runnable::run);
+
+        assertThat(fetchedPages).isEmpty();
+        assertThat(pages.hasNext()).isTrue();
+        assertThat(fetchedPages).containsExactly(1);
+    }
+
+    @Test
+    void firstPageFailureSurfacesFromIteration() {
+        IllegalStateException failure = new IllegalStateException("throttled");
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            throw failure;
+        }, Runnable::run);
+
+        assertThat(pages.hasNext()).isTrue();
+        assertThatThrownBy(pages::next).isSameAs(failure);
+    }
+
+    @Test
+    void closeBeforeIterationNeverFetches() {
+        List<Integer> fetchedPages = new CopyOnWriteArrayList<>();
+
+        PrefetchingQueryIterator pages = new PrefetchingQueryIterator(exclusiveStartKey -> {
+            fetchedPages.add(fetchedPages.size() + 1);
+            return QueryResponse.builder().items(List.of()).build();
+        }, Runnable::run);
+
+        pages.close();
+
+        assertThat(pages.hasNext()).isFalse();
+        assertThat(fetchedPages).isEmpty();
+    }
+}
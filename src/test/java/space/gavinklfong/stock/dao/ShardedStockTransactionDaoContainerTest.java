@@ -0,0 +1,86 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedStockTransactionDaoContainerTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final Instant START_TIME = Instant.parse("2022-02-11T00:00:00Z");
+    private static final Instant END_TIME = Instant.parse("2022-03-14T00:00:00Z");
+
+    private static final StockTransactionSchema SHARDED_SCHEMA = StockTransactionSchema.builder()
+            .tableName("stock-transaction-sharded")
+            .storageFormat(StockTransactionStorageFormat.COMPACT)
+            .shardCount(4)
+            .build();
+
+    private static final StockTransactionTableBuilder STOCK_TRANSACTION_TABLE_BUILDER = new StockTransactionTableBuilder(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SHARDED_SCHEMA);
+    private final ShardedStockTransactionDao shardedStockTransactionDao = new ShardedStockTransactionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SHARDED_SCHEMA,
+            new StockTransactionDaoMetrics(new SimpleMeterRegistry()));
+
+    private static List<StockTransaction> STOCK_TRANSACTIONS;
+
+    @BeforeAll
+    static void setupAll() throws IOException {
+        STOCK_TRANSACTIONS = StockTransactionReader.readFromCSV();
+    }
+
+    @BeforeEach
+    void setUp() {
+        try {
+            STOCK_TRANSACTION_TABLE_BUILDER.deleteTable();
+        } catch (ResourceNotFoundException e) {}
+
+        STOCK_TRANSACTION_TABLE_BUILDER.createTable();
+
+        STOCK_TRANSACTIONS.forEach(shardedStockTransactionDao::saveStockTransaction);
+    }
+
+    @Test
+    void findStockTransactionsByAccountNumberAndTimeRange() {
+        assertThat(shardedStockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME))
+                .containsExactlyElementsOf(expected());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 100})
+    void findStockTransactionsByAccountNumberAndTimeRange_pagesNewestFirst(int pageSize) {
+        List<StockTransaction> results = new ArrayList<>();
+        StockTransactionKey nextQueryKey = null;
+        do {
+            QueryResultPage<StockTransaction, StockTransactionKey> page = shardedStockTransactionDao
+                    .findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME, pageSize, nextQueryKey);
+            assertThat(page.getResults()).hasSizeLessThanOrEqualTo(pageSize);
+            results.addAll(page.getResults());
+            nextQueryKey = page.getNextQueryKey();
+        } while (nextQueryKey != null);
+
+        assertThat(results).containsExactlyElementsOf(expected().reversed());
+    }
+
+    private static List<StockTransaction> expected() {
+        return STOCK_TRANSACTIONS.stream()
+                .filter(stockTransaction -> !stockTransaction.getTimestamp().isBefore(START_TIME)
+                        && !stockTransaction.getTimestamp().isAfter(END_TIME))
+                .sorted(Comparator.comparing(StockTransaction::getTimestamp))
+                .toList();
+    }
+}
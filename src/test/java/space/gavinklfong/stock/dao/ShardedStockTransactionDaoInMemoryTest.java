@@ -0,0 +1,89 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the sharded DAO against {@link InMemoryDynamoDbClient}, counting the queries a sparse account costs.
+ */
+class ShardedStockTransactionDaoInMemoryTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final int SHARD_COUNT = 4;
+    private static final StockTransactionSchema SHARDED_SCHEMA = StockTransactionSchema.builder()
+            .tableName("stock-transaction-sharded")
+            .storageFormat(StockTransactionStorageFormat.COMPACT)
+            .shardCount(SHARD_COUNT)
+            .build();
+    private static final StockTransaction STOCK_TRANSACTION = StockTransaction.builder()
+            .accountNumber(ACCOUNT_NUMBER)
+            .timestamp(Instant.parse("2022-01-01T16:29:20.712Z"))
+            .ticker("APPL")
+            .tradeAction(TradeAction.BUY)
+            .unit(159)
+            .unitPrice(new BigDecimal("68.334999"))
+            .build();
+
+    private final AtomicInteger queries = new AtomicInteger();
+    private final InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient() {
+        @Override
+        public QueryResponse query(QueryRequest request) {
+            queries.incrementAndGet();
+            return super.query(request);
+        }
+    };
+    private final StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        new StockTransactionTableBuilder(dynamoDbClient, SHARDED_SCHEMA).createTable();
+        new ShardedStockTransactionDao(dynamoDbClient, SHARDED_SCHEMA, metrics).saveStockTransaction(STOCK_TRANSACTION);
+    }
+
+    @Test
+    void openRange_walksBackNoFurtherThanMaxLookback() {
+        ShardedStockTransactionDao dao = new ShardedStockTransactionDao(dynamoDbClient, SHARDED_SCHEMA, metrics,
+                Duration.ofDays(30));
+        Instant endTime = Instant.parse("2023-01-01T00:00:00Z");
+
+        QueryResultPage<StockTransaction, StockTransactionKey> page = dao.findStockTransactionByAccountNumberWithTimeRange(
+                ACCOUNT_NUMBER, Instant.EPOCH, endTime, 10, null);
+
+        assertThat(page.getResults()).isEmpty();
+        assertThat(page.getNextQueryKey()).isNull();
+        // the day the range ends on and the 30 days before it, each over every shard
+        assertThat(queries.get()).isEqualTo(31 * SHARD_COUNT);
+    }
+
+    @Test
+    void openRange_findsTransactionsWithinMaxLookback() {
+        ShardedStockTransactionDao dao = new ShardedStockTransactionDao(dynamoDbClient, SHARDED_SCHEMA, metrics,
+                Duration.ofDays(30));
+
+        QueryResultPage<StockTransaction, StockTransactionKey> page = dao.findStockTransactionByAccountNumberWithTimeRange(
+                ACCOUNT_NUMBER, Instant.EPOCH, Instant.parse("2022-01-20T00:00:00Z"), 10, null);
+
+        assertThat(page.getResults()).containsExactly(STOCK_TRANSACTION);
+    }
+
+    @Test
+    void rejectsNonPositiveMaxLookback() {
+        assertThatThrownBy(() -> new ShardedStockTransactionDao(dynamoDbClient, SHARDED_SCHEMA, metrics, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,77 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class StockTransactionAsyncDaoContainerTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+
+    private static final StockTransactionTableBuilder STOCK_TRANSACTION_TABLE_BUILDER = new StockTransactionTableBuilder(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, StockTransactionSchema.DEFAULT);
+    private final StockTransactionAsyncDao stockTransactionAsyncDao = new StockTransactionAsyncDao(DynamoDBTestContainerSetup.DYNAMO_DB_ASYNC_CLIENT, StockTransactionSchema.DEFAULT,
+            new StockTransactionDaoMetrics(new SimpleMeterRegistry()));
+
+    private static List<StockTransaction> STOCK_TRANSACTIONS;
+
+    @BeforeAll
+    static void setupAll() throws IOException {
+        STOCK_TRANSACTIONS = StockTransactionReader.readFromCSV();
+    }
+
+    @BeforeEach
+    void setUp() {
+        try {
+            STOCK_TRANSACTION_TABLE_BUILDER.deleteTable();
+        } catch (ResourceNotFoundException e) {}
+
+        STOCK_TRANSACTION_TABLE_BUILDER.createTable();
+
+        CompletableFuture.allOf(STOCK_TRANSACTIONS.stream()
+                        .map(stockTransactionAsyncDao::saveStockTransaction)
+                        .toArray(CompletableFuture[]::new))
+                .join();
+    }
+
+    @Test
+    void findStockTransactionsByAccountNumber() {
+        List<StockTransaction> stockTransactions = stockTransactionAsyncDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER).join();
+        assertThat(stockTransactions).hasSize(STOCK_TRANSACTIONS.size());
+    }
+
+    @Test
+    void publishStockTransactionsByAccountNumber() {
+        List<StockTransaction> stockTransactions = new ArrayList<>();
+        stockTransactionAsyncDao.publishStockTransactionByAccountNumber(ACCOUNT_NUMBER)
+                .subscribe(stockTransactions::add)
+                .join();
+
+        assertThat(stockTransactions).hasSize(STOCK_TRANSACTIONS.size());
+    }
+
+    @Test
+    void findStockTransactionByAccountNumberAndTradeAction_withPagination() {
+        QueryResultPage<StockTransaction, StockTransactionKey> result = stockTransactionAsyncDao
+                .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, null)
+                .join();
+
+        assertThat(result.getResults()).hasSize(10)
+                .allMatch(stockTransaction -> stockTransaction.getTradeAction() == TradeAction.SELL);
+    }
+}
@@ -0,0 +1,41 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockTransactionBucketsTest {
+
+    private final StockTransactionBuckets buckets = new StockTransactionBuckets(4);
+
+    @Test
+    void bucketOf_isAccountDayAndShard() {
+        Instant timestamp = Instant.parse("2026-10-17T23:59:59.999999999Z");
+
+        assertThat(buckets.bucketOf("91245776", timestamp))
+                .isEqualTo("91245776#2026-10-17#" + buckets.shardOf(timestamp))
+                .isIn(buckets.bucketsOf("91245776", LocalDate.parse("2026-10-17")));
+    }
+
+    @Test
+    void shardOf_spreadsConsecutiveTimestamps() {
+        Instant start = Instant.parse("2026-10-17T00:00:00Z");
+
+        assertThat(IntStream.range(0, 1_000)
+                .map(i -> buckets.shardOf(start.plusMillis(i)))
+                .distinct())
+                .containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void dayBounds() {
+        LocalDate day = LocalDate.parse("2026-10-17");
+
+        assertThat(StockTransactionBuckets.startOf(day)).isEqualTo(Instant.parse("2026-10-17T00:00:00Z"));
+        assertThat(StockTransactionBuckets.endOf(day)).isEqualTo(Instant.parse("2026-10-17T23:59:59.999999999Z"));
+    }
+}
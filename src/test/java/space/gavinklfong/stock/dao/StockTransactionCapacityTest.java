@@ -0,0 +1,28 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockTransactionCapacityTest {
+
+    @Test
+    void bulkLimitersArePacedToShareOfProvisionedUnits() {
+        StockTransactionCapacity capacity = StockTransactionCapacity.builder()
+                .billingMode(BillingMode.PROVISIONED)
+                .readCapacityUnits(20)
+                .writeCapacityUnits(10)
+                .bulkShare(0.5)
+                .build();
+
+        assertThat(capacity.newBulkReadLimiter().getUnitsPerSecond()).isEqualTo(10);
+        assertThat(capacity.newBulkWriteLimiter().getUnitsPerSecond()).isEqualTo(5);
+    }
+
+    @Test
+    void onDemandBulkJobsAreNotPaced() {
+        assertThat(StockTransactionCapacity.ON_DEMAND.newBulkReadLimiter()).isNull();
+        assertThat(StockTransactionCapacity.ON_DEMAND.newBulkWriteLimiter()).isNull();
+    }
+}
@@ -1,21 +1,46 @@
 package space.gavinklfong.stock.dao;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.ExportResult;
 import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockPosition;
 import space.gavinklfong.stock.model.StockTransaction;
 import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.StockTransactionSummary;
 import space.gavinklfong.stock.model.TradeAction;
+import space.gavinklfong.stock.util.StockTransactionCsv;
 import space.gavinklfong.stock.util.StockTransactionReader;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.POSITION_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.REFERENCE_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
 
 @Slf4j
 class StockTransactionDaoContainerTest {
@@ -23,9 +48,20 @@ class StockTransactionDaoContainerTest {
     private static final String ACCOUNT_NUMBER = "91245776";
     private static final Instant START_TIME = Instant.parse("2022-02-11T00:00:00Z");
     private static final Instant END_TIME = Instant.parse("2022-02-14T00:00:00Z");
+    // positions and references are opt-in, the tests cover them
+    private static final StockTransactionSchema SCHEMA = StockTransactionSchema.builder()
+            .tableName(TABLE_NAME)
+            .storageFormat(StockTransactionStorageFormat.ISO_STRING)
+            .positionTableName(POSITION_TABLE_NAME)
+            .referenceTableName(REFERENCE_TABLE_NAME)
+            .build();
 
-    private static final StockTransactionTableBuilder STOCK_TRANSACTION_TABLE_BUILDER = new StockTransactionTableBuilder(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT);
-    private final StockTransactionDao stockTransactionDao = new StockTransactionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT);
+    private static final StockTransactionTableBuilder STOCK_TRANSACTION_TABLE_BUILDER = new StockTransactionTableBuilder(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SCHEMA);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(meterRegistry);
+    private final StockTransactionDao stockTransactionDao = new StockTransactionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SCHEMA, metrics);
+    private final StockTransactionBatchWriter stockTransactionBatchWriter = new StockTransactionBatchWriter(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SCHEMA, metrics);
+    private final StockPositionDao stockPositionDao = new StockPositionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SCHEMA, metrics);
 
     private static List<StockTransaction> STOCK_TRANSACTIONS;
 
@@ -58,6 +94,34 @@ class StockTransactionDaoContainerTest {
         log.info("count: {}", stockTransactions.size());
     }
 
+    @Test
+    void streamStockTransactionsByAccountNumberAndTimeRange() {
+        try (Stream<StockTransaction> stockTransactions = stockTransactionDao
+                .streamStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME)) {
+            assertThat(stockTransactions)
+                    .isNotEmpty()
+                    .allMatch(stockTransaction -> !stockTransaction.getTimestamp().isBefore(START_TIME)
+                            && !stockTransaction.getTimestamp().isAfter(END_TIME));
+        }
+    }
+
+    @Test
+    void findStockTransactionsByAccountNumbers() {
+        Map<String, QueryResultPage<StockTransaction, StockTransactionKey>> results = stockTransactionDao
+                .findStockTransactionsByAccountNumbers(List.of("00000000", ACCOUNT_NUMBER), 5, START_TIME, END_TIME, 2);
+
+        assertThat(results).containsOnlyKeys("00000000", ACCOUNT_NUMBER);
+        assertThat(results.keySet()).containsExactly("00000000", ACCOUNT_NUMBER);
+        assertThat(results.get("00000000").getResults()).isEmpty();
+
+        List<StockTransaction> latest = results.get(ACCOUNT_NUMBER).getResults();
+        assertThat(latest).hasSize(5)
+                .isSortedAccordingTo(Comparator.comparing(StockTransaction::getTimestamp).reversed())
+                .allMatch(stockTransaction -> !stockTransaction.getTimestamp().isBefore(START_TIME)
+                        && !stockTransaction.getTimestamp().isAfter(END_TIME));
+        assertThat(results.get(ACCOUNT_NUMBER).getNextQueryKey()).isNotNull();
+    }
+
     @Test
     void findStockTransactionByAccountNumberWithPageSize1() {
         QueryResultPage<StockTransaction, StockTransactionKey> result = stockTransactionDao
@@ -91,7 +155,24 @@ class StockTransactionDaoContainerTest {
         QueryResultPage<StockTransaction, StockTransactionKey> result = stockTransactionDao
                 .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL);
 
-        assertThat(result.getResults()).hasSize(4);
+        assertThat(result.getResults()).hasSize(10)
+                .allMatch(stockTransaction -> stockTransaction.getTradeAction() == TradeAction.SELL);
+    }
+
+    @Test
+    void findStockTransactionByAccountNumberAndTradeAction_recordsMetrics() {
+        stockTransactionDao.findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL);
+
+        assertThat(meterRegistry.get(StockTransactionDaoMetrics.OPERATION_TIMER)
+                .tag("operation", "findStockTransactionByAccountNumberAndTradeAction")
+                .tag("index", DynamoDBTableConstant.ACCOUNT_TRADE_ACTION_INDEX)
+                .tag("outcome", "success")
+                .timer()
+                .count()).isEqualTo(1);
+        assertThat(meterRegistry.get(StockTransactionDaoMetrics.RETURNED_ITEMS_COUNTER)
+                .tag("operation", "findStockTransactionByAccountNumberAndTradeAction")
+                .counter()
+                .count()).isEqualTo(10);
     }
 
     @Test
@@ -101,4 +182,197 @@ class StockTransactionDaoContainerTest {
 
         assertThat(result.getResults()).hasSize(10);
     }
+
+    @Test
+    void findStockTransactionByAccountNumberAndTradeAction_pagesMatchFilterPath() {
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, null);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, firstPage.getNextQueryKey());
+
+        QueryResultPage<StockTransaction, StockTransactionKey> filteredPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL, 20, null);
+
+        assertThat(filteredPage.getResults())
+                .containsExactlyElementsOf(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList());
+    }
+
+    @Test
+    void findStockTransactionByAccountNumberAndTradeActionWithFilter_stopsAtScanBudget() {
+        QueryResultPage<StockTransaction, StockTransactionKey> partialPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL, 20, null,
+                        5, Duration.ofSeconds(10));
+
+        assertThat(partialPage.getResults()).hasSizeLessThanOrEqualTo(5)
+                .allMatch(stockTransaction -> stockTransaction.getTradeAction() == TradeAction.SELL);
+        assertThat(partialPage.getNextQueryKey()).isNotNull();
+
+        QueryResultPage<StockTransaction, StockTransactionKey> remainingPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL,
+                        20 - partialPage.getResults().size(), partialPage.getNextQueryKey());
+        QueryResultPage<StockTransaction, StockTransactionKey> fullPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL, 20, null);
+
+        assertThat(fullPage.getResults())
+                .containsExactlyElementsOf(Stream.concat(partialPage.getResults().stream(), remainingPage.getResults().stream()).toList());
+    }
+
+    @Test
+    void findStockTransactionSummaryByAccountNumber_pagesLikeFullItems() {
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao
+                .findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao
+                .findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, firstPage.getNextQueryKey());
+
+        QueryResultPage<StockTransactionSummary, StockTransactionKey> firstSummaryPage = stockTransactionDao
+                .findStockTransactionSummaryByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        QueryResultPage<StockTransactionSummary, StockTransactionKey> secondSummaryPage = stockTransactionDao
+                .findStockTransactionSummaryByAccountNumber(ACCOUNT_NUMBER, 10, firstSummaryPage.getNextQueryKey());
+
+        assertThat(firstSummaryPage.getNextQueryKey()).isEqualTo(firstPage.getNextQueryKey());
+        assertThat(Stream.concat(firstSummaryPage.getResults().stream(), secondSummaryPage.getResults().stream()).toList())
+                .containsExactlyElementsOf(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream())
+                        .map(stockTransaction -> StockTransactionSummary.builder()
+                                .timestamp(stockTransaction.getTimestamp())
+                                .ticker(stockTransaction.getTicker())
+                                .tradeAction(stockTransaction.getTradeAction())
+                                .unit(stockTransaction.getUnit())
+                                .build())
+                        .toList());
+    }
+
+    @Test
+    void saveStockTransactions() {
+        STOCK_TRANSACTION_TABLE_BUILDER.deleteTable();
+        STOCK_TRANSACTION_TABLE_BUILDER.createTable();
+
+        BatchWriteResult result = stockTransactionBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream());
+
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(result.getWrittenCount()).isEqualTo(STOCK_TRANSACTIONS.size());
+        assertThat(stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER)).hasSize(STOCK_TRANSACTIONS.size());
+    }
+
+    @Test
+    void findStockPositions() {
+        assertPositionsMatchTransactions();
+    }
+
+    @Test
+    void saveStockTransactions_maintainsPositions() {
+        STOCK_TRANSACTION_TABLE_BUILDER.deleteTable();
+        STOCK_TRANSACTION_TABLE_BUILDER.createTable();
+
+        BatchWriteResult result = stockTransactionBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream());
+        assertThat(result.getFailures()).isEmpty();
+        assertPositionsMatchTransactions();
+
+        BatchWriteResult rewrite = stockTransactionBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream().limit(30));
+        assertThat(rewrite.getFailures()).hasSize(30)
+                .allMatch(failure -> failure.getReason().equals("already exists"));
+        assertPositionsMatchTransactions();
+    }
+
+    @Test
+    void saveStockTransaction_existingTransaction_leavesPositionUnchanged() {
+        StockTransaction existing = STOCK_TRANSACTIONS.get(0);
+        StockPosition before = stockPositionDao.findStockPosition(ACCOUNT_NUMBER, existing.getTicker()).orElseThrow();
+
+        assertThatThrownBy(() -> stockTransactionDao.saveStockTransaction(existing))
+                .isInstanceOf(TransactionCanceledException.class);
+        assertThat(stockPositionDao.findStockPosition(ACCOUNT_NUMBER, existing.getTicker())).contains(before);
+    }
+
+    @Test
+    void saveStockTransaction_retriedReference_isWrittenOnce() {
+        StockTransaction transaction = StockTransaction.builder()
+                .accountNumber(ACCOUNT_NUMBER)
+                .timestamp(Instant.parse("2022-03-01T10:00:00Z"))
+                .ticker("NVDA")
+                .tradeAction(TradeAction.BUY)
+                .unit(10)
+                .unitPrice(new BigDecimal("250.5"))
+                .reference("ORD-0001")
+                .build();
+        StockTransaction retry = transaction.toBuilder()
+                .timestamp(transaction.getTimestamp().plusMillis(5))
+                .build();
+
+        stockTransactionDao.saveStockTransaction(transaction);
+        stockTransactionDao.saveStockTransaction(retry);
+        new StockTransactionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, SCHEMA, metrics)
+                .saveStockTransaction(retry);
+
+        assertThat(stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER))
+                .hasSize(STOCK_TRANSACTIONS.size() + 1)
+                .contains(transaction);
+        assertThat(stockPositionDao.findStockPosition(ACCOUNT_NUMBER, "NVDA").orElseThrow().getTransactionCount())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("stock.transaction.dao.items.duplicate").counter().count()).isEqualTo(2);
+    }
+
+    private void assertPositionsMatchTransactions() {
+        Map<String, List<StockTransaction>> byTicker = STOCK_TRANSACTIONS.stream()
+                .collect(Collectors.groupingBy(StockTransaction::getTicker));
+
+        List<StockPosition> positions = stockPositionDao.findStockPositionsByAccountNumber(ACCOUNT_NUMBER);
+        assertThat(positions).extracting(StockPosition::getTicker).containsExactlyInAnyOrderElementsOf(byTicker.keySet());
+
+        positions.forEach(position -> {
+            List<StockTransaction> transactions = byTicker.get(position.getTicker());
+            long netUnit = transactions.stream()
+                    .mapToLong(t -> t.getTradeAction() == TradeAction.BUY ? t.getUnit() : -t.getUnit())
+                    .sum();
+            BigDecimal netCost = transactions.stream()
+                    .map(t -> t.getUnitPrice().multiply(BigDecimal.valueOf(t.getTradeAction() == TradeAction.BUY ? t.getUnit() : -t.getUnit())))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+            assertThat(position.getTransactionCount()).isEqualTo(transactions.size());
+            assertThat(position.getUnit()).isEqualTo(netUnit);
+            assertThat(position.getNetCost()).isEqualByComparingTo(netCost);
+        });
+    }
+
+    @Test
+    void copyToCompactTable() {
+        StockTransactionSchema compactSchema = StockTransactionSchema.builder()
+                .tableName("stock-transaction-compact")
+                .storageFormat(StockTransactionStorageFormat.COMPACT)
+                .build();
+        StockTransactionTableBuilder compactTableBuilder = new StockTransactionTableBuilder(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, compactSchema);
+        try {
+            compactTableBuilder.deleteTable();
+        } catch (ResourceNotFoundException e) {}
+        compactTableBuilder.createTable();
+
+        BatchWriteResult result = new StockTransactionTableMigrator(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, metrics)
+                .copy(SCHEMA, compactSchema);
+        assertThat(result.getFailures()).isEmpty();
+
+        StockTransactionDao compactDao = new StockTransactionDao(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, compactSchema, metrics);
+        assertThat(compactDao.findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME))
+                .containsExactlyElementsOf(stockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME));
+    }
+
+    @Test
+    void exportToGzippedCsv_resumesFromCheckpoints(@TempDir Path directory) throws IOException {
+        StockTransactionExporter exporter = new StockTransactionExporter(DynamoDBTestContainerSetup.DYNAMO_DB_CLIENT, metrics);
+
+        ExportResult result = exporter.export(SCHEMA, directory, 4, new CapacityRateLimiter(1_000));
+
+        assertThat(result.getExportedCount()).isEqualTo(STOCK_TRANSACTIONS.size());
+        assertThat(result.getFiles()).hasSize(4);
+        List<StockTransaction> exported = new ArrayList<>();
+        for (Path file : result.getFiles()) {
+            try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)) {
+                StockTransactionCsv.READ_FORMAT.parse(in).forEach(csvRecord -> exported.add(StockTransactionCsv.fromRecord(csvRecord)));
+            }
+        }
+        assertThat(exported).containsExactlyInAnyOrderElementsOf(STOCK_TRANSACTIONS);
+
+        // every segment is complete, so exporting again reads nothing
+        STOCK_TRANSACTION_TABLE_BUILDER.deleteTable();
+        assertThat(exporter.export(SCHEMA, directory, 4, new CapacityRateLimiter(1_000)).getExportedCount())
+                .isEqualTo(STOCK_TRANSACTIONS.size());
+    }
 }
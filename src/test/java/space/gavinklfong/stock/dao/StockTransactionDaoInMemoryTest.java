@@ -0,0 +1,312 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.QueryResultPage;
+import space.gavinklfong.stock.model.StockPosition;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionCriteria;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.TradeAction;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.POSITION_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.REFERENCE_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+
+/**
+ * Runs the DAO against {@link InMemoryDynamoDbClient}, without Docker.
+ */
+class StockTransactionDaoInMemoryTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+    private static final Instant START_TIME = Instant.parse("2022-02-11T00:00:00Z");
+    private static final Instant END_TIME = Instant.parse("2022-02-14T00:00:00Z");
+    // positions, references and the ticker index are opt-in, the tests cover them
+    private static final StockTransactionSchema SCHEMA = StockTransactionSchema.builder()
+            .tableName(TABLE_NAME)
+            .storageFormat(StockTransactionStorageFormat.ISO_STRING)
+            .positionTableName(POSITION_TABLE_NAME)
+            .referenceTableName(REFERENCE_TABLE_NAME)
+            .tickerIndex(true)
+            .build();
+
+    private final InMemoryDynamoDbClient dynamoDbClient = new InMemoryDynamoDbClient();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(meterRegistry);
+    private final StockTransactionDao stockTransactionDao = new StockTransactionDao(dynamoDbClient, SCHEMA, metrics);
+    private final StockTransactionBatchWriter stockTransactionBatchWriter = new StockTransactionBatchWriter(dynamoDbClient, SCHEMA, metrics);
+    private final StockPositionDao stockPositionDao = new StockPositionDao(dynamoDbClient, SCHEMA, metrics);
+
+    private static List<StockTransaction> STOCK_TRANSACTIONS;
+
+    @BeforeAll
+    static void setupAll() throws IOException {
+        STOCK_TRANSACTIONS = StockTransactionReader.readFromCSV();
+    }
+
+    @BeforeEach
+    void setUp() {
+        new StockTransactionTableBuilder(dynamoDbClient, SCHEMA).createTable();
+        STOCK_TRANSACTIONS.forEach(stockTransactionDao::saveStockTransaction);
+    }
+
+    @Test
+    void findStockTransactionsByAccountNumberAndTimeRange() {
+        List<StockTransaction> expected = STOCK_TRANSACTIONS.stream()
+                .filter(stockTransaction -> stockTransaction.getAccountNumber().equals(ACCOUNT_NUMBER)
+                        && !stockTransaction.getTimestamp().isBefore(START_TIME)
+                        && !stockTransaction.getTimestamp().isAfter(END_TIME))
+                .sorted(Comparator.comparing(StockTransaction::getTimestamp))
+                .toList();
+
+        assertThat(stockTransactionDao.findStockTransactionByAccountNumberWithTimeRange(ACCOUNT_NUMBER, START_TIME, END_TIME))
+                .isNotEmpty()
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void findStockTransactionByAccountNumber_pagesThroughAllTransactions() {
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao
+                .findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, null);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao
+                .findStockTransactionByAccountNumber(ACCOUNT_NUMBER, 10, firstPage.getNextQueryKey());
+
+        assertThat(firstPage.getResults()).hasSize(10);
+        assertThat(firstPage.getNextQueryKey()).isNotNull();
+        assertThat(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList())
+                .containsExactlyElementsOf(stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER).subList(0, 20));
+    }
+
+    @Test
+    void findStockTransactionByAccountNumberAndTradeAction_pagesMatchFilterPath() {
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, null);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeAction(ACCOUNT_NUMBER, TradeAction.SELL, 10, firstPage.getNextQueryKey());
+
+        QueryResultPage<StockTransaction, StockTransactionKey> filteredPage = stockTransactionDao
+                .findStockTransactionByAccountNumberAndTradeActionWithFilter(ACCOUNT_NUMBER, TradeAction.SELL, 20, null);
+
+        assertThat(firstPage.getResults()).hasSize(10)
+                .allMatch(stockTransaction -> stockTransaction.getTradeAction() == TradeAction.SELL);
+        assertThat(filteredPage.getResults())
+                .containsExactlyElementsOf(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList());
+    }
+
+    @Test
+    void findStockTransactions_latestOfTradeActionInRange() {
+        StockTransactionCriteria criteria = StockTransactionCriteria.builder()
+                .accountNumber(ACCOUNT_NUMBER)
+                .startTime(START_TIME)
+                .endTime(END_TIME)
+                .tradeAction(TradeAction.SELL)
+                .newestFirst(true)
+                .pageSize(3)
+                .build();
+
+        List<StockTransaction> expected = STOCK_TRANSACTIONS.stream()
+                .filter(stockTransaction -> stockTransaction.getTradeAction() == TradeAction.SELL
+                        && !stockTransaction.getTimestamp().isBefore(START_TIME)
+                        && !stockTransaction.getTimestamp().isAfter(END_TIME))
+                .sorted(Comparator.comparing(StockTransaction::getTimestamp).reversed())
+                .toList();
+
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao.findStockTransactions(criteria);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao.findStockTransactions(
+                criteria.toBuilder().exclusiveStartKey(firstPage.getNextQueryKey()).build());
+
+        assertThat(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList())
+                .containsExactlyElementsOf(expected.subList(0, Math.min(6, expected.size())));
+    }
+
+    @Test
+    void findStockTransactions_filtersByTicker() {
+        String ticker = STOCK_TRANSACTIONS.get(0).getTicker();
+        StockTransactionCriteria criteria = StockTransactionCriteria.builder()
+                .accountNumber(ACCOUNT_NUMBER)
+                .startTime(START_TIME)
+                .ticker(ticker)
+                .pageSize(5)
+                .build();
+
+        List<StockTransaction> expected = STOCK_TRANSACTIONS.stream()
+                .filter(stockTransaction -> stockTransaction.getTicker().equals(ticker)
+                        && !stockTransaction.getTimestamp().isBefore(START_TIME))
+                .sorted(Comparator.comparing(StockTransaction::getTimestamp))
+                .limit(10)
+                .toList();
+
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao.findStockTransactions(criteria);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao.findStockTransactions(
+                criteria.toBuilder().exclusiveStartKey(firstPage.getNextQueryKey()).build());
+
+        assertThat(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList())
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void findStockTransactionByTickerWithTimeRange_pagesAcrossAccounts() {
+        StockTransaction otherAccount = STOCK_TRANSACTIONS.get(0).toBuilder()
+                .accountNumber("10000001")
+                .timestamp(START_TIME.plusSeconds(1))
+                .reference(null)
+                .build();
+        stockTransactionDao.saveStockTransaction(otherAccount);
+        String ticker = otherAccount.getTicker();
+
+        List<StockTransaction> expected = Stream.concat(STOCK_TRANSACTIONS.stream(), Stream.of(otherAccount))
+                .filter(stockTransaction -> stockTransaction.getTicker().equals(ticker)
+                        && !stockTransaction.getTimestamp().isBefore(START_TIME)
+                        && !stockTransaction.getTimestamp().isAfter(END_TIME))
+                .sorted(Comparator.comparing(StockTransaction::getTimestamp))
+                .toList();
+
+        QueryResultPage<StockTransaction, StockTransactionKey> firstPage = stockTransactionDao
+                .findStockTransactionByTickerWithTimeRange(ticker, START_TIME, END_TIME, 2, null);
+        QueryResultPage<StockTransaction, StockTransactionKey> secondPage = stockTransactionDao
+                .findStockTransactionByTickerWithTimeRange(ticker, START_TIME, END_TIME, 100, firstPage.getNextQueryKey());
+
+        assertThat(firstPage.getResults()).hasSize(2).contains(otherAccount);
+        assertThat(Stream.concat(firstPage.getResults().stream(), secondPage.getResults().stream()).toList())
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void saveStockTransactions_maintainsPositions() {
+        dynamoDbClient.clear();
+        new StockTransactionTableBuilder(dynamoDbClient, SCHEMA).createTable();
+
+        BatchWriteResult result = stockTransactionBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream());
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(result.getWrittenCount()).isEqualTo(STOCK_TRANSACTIONS.size());
+
+        List<StockPosition> positions = stockPositionDao.findStockPositionsByAccountNumber(ACCOUNT_NUMBER);
+        assertThat(positions.stream().mapToLong(StockPosition::getTransactionCount).sum())
+                .isEqualTo(STOCK_TRANSACTIONS.size());
+        assertThat(positions).allMatch(position -> position.getUnit() == position.getBuyUnit() - position.getSellUnit());
+
+        BatchWriteResult rewrite = stockTransactionBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream().limit(30));
+        assertThat(rewrite.getFailures()).hasSize(30)
+                .allMatch(failure -> failure.getReason().equals("already exists"));
+        assertThat(stockPositionDao.findStockPositionsByAccountNumber(ACCOUNT_NUMBER)).isEqualTo(positions);
+    }
+
+    @Test
+    void saveStockTransactions_defaultSchema_overwritesWithBatchWriteItem() {
+        dynamoDbClient.clear();
+        new StockTransactionTableBuilder(dynamoDbClient, StockTransactionSchema.DEFAULT).createTable();
+        StockTransactionBatchWriter defaultBatchWriter = new StockTransactionBatchWriter(dynamoDbClient,
+                StockTransactionSchema.DEFAULT, metrics);
+
+        assertThat(defaultBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream()).getFailures()).isEmpty();
+        BatchWriteResult rewrite = defaultBatchWriter.saveStockTransactions(STOCK_TRANSACTIONS.stream().limit(30));
+
+        assertThat(rewrite.getFailures()).isEmpty();
+        assertThat(rewrite.getWrittenCount()).isEqualTo(30);
+        assertThat(new StockTransactionDao(dynamoDbClient, StockTransactionSchema.DEFAULT, metrics)
+                .findStockTransactionByAccountNumber(ACCOUNT_NUMBER))
+                .hasSize(STOCK_TRANSACTIONS.size());
+    }
+
+    @Test
+    void saveStockTransactions_repeatedKey_isCountedAsDuplicate() {
+        dynamoDbClient.clear();
+        new StockTransactionTableBuilder(dynamoDbClient, StockTransactionSchema.DEFAULT).createTable();
+        StockTransaction first = STOCK_TRANSACTIONS.get(0);
+        StockTransaction repeated = first.toBuilder().unit(first.getUnit() + 1).build();
+
+        BatchWriteResult result = new StockTransactionBatchWriter(dynamoDbClient, StockTransactionSchema.DEFAULT, metrics)
+                .saveStockTransactions(Stream.of(first, repeated));
+
+        assertThat(result.getWrittenCount()).isEqualTo(1);
+        assertThat(result.getDuplicateCount()).isEqualTo(1);
+        assertThat(new StockTransactionDao(dynamoDbClient, StockTransactionSchema.DEFAULT, metrics)
+                .findStockTransactionByAccountNumber(first.getAccountNumber()))
+                .containsExactly(repeated);
+    }
+
+    @Test
+    void saveStockTransactions_unmappableTransaction_isReportedAsFailure() {
+        StockTransaction unpriced = STOCK_TRANSACTIONS.get(0).toBuilder()
+                .timestamp(Instant.parse("2022-03-01T10:00:00Z"))
+                .unitPrice(null)
+                .build();
+
+        BatchWriteResult result = stockTransactionBatchWriter.saveStockTransactions(Stream.of(unpriced));
+
+        assertThat(result.getWrittenCount()).isZero();
+        assertThat(result.getFailures()).singleElement().satisfies(failure -> {
+            assertThat(failure.getStockTransaction()).isEqualTo(unpriced);
+            assertThat(failure.isRetryable()).isFalse();
+        });
+    }
+
+    @Test
+    void saveStockTransactions_batchAndSingleWrites_notifyWriteListeners() {
+        dynamoDbClient.clear();
+        new StockTransactionTableBuilder(dynamoDbClient, StockTransactionSchema.DEFAULT).createTable();
+        StockTransactionWriteListeners writeListeners = new StockTransactionWriteListeners();
+        Queue<StockTransaction> notified = new ConcurrentLinkedQueue<>();
+        writeListeners.add(notified::add);
+        List<StockTransaction> transactions = STOCK_TRANSACTIONS.subList(0, 30);
+
+        new StockTransactionBatchWriter(dynamoDbClient, StockTransactionSchema.DEFAULT, metrics, writeListeners)
+                .saveStockTransactions(transactions.stream());
+        new StockTransactionDao(dynamoDbClient, StockTransactionSchema.DEFAULT, metrics, writeListeners)
+                .saveStockTransaction(transactions.getFirst());
+
+        assertThat(notified).hasSize(31).containsAll(transactions);
+    }
+
+    @Test
+    void saveStockTransaction_existingTransaction_isRejected() {
+        StockTransaction existing = STOCK_TRANSACTIONS.get(0);
+        StockPosition before = stockPositionDao.findStockPosition(ACCOUNT_NUMBER, existing.getTicker()).orElseThrow();
+
+        assertThatThrownBy(() -> stockTransactionDao.saveStockTransaction(existing))
+                .isInstanceOf(TransactionCanceledException.class);
+        assertThat(stockPositionDao.findStockPosition(ACCOUNT_NUMBER, existing.getTicker())).contains(before);
+    }
+
+    @Test
+    void saveStockTransaction_retriedReference_isWrittenOnce() {
+        StockTransaction transaction = StockTransaction.builder()
+                .accountNumber(ACCOUNT_NUMBER)
+                .timestamp(Instant.parse("2022-03-01T10:00:00Z"))
+                .ticker("NVDA")
+                .tradeAction(TradeAction.BUY)
+                .unit(10)
+                .unitPrice(new BigDecimal("250.5"))
+                .reference("ORD-0001")
+                .build();
+        StockTransaction retry = transaction.toBuilder()
+                .timestamp(transaction.getTimestamp().plusMillis(5))
+                .build();
+
+        stockTransactionDao.saveStockTransaction(transaction);
+        new StockTransactionDao(dynamoDbClient, SCHEMA, metrics)
+                .saveStockTransaction(retry);
+
+        assertThat(stockTransactionDao.findStockTransactionByAccountNumber(ACCOUNT_NUMBER))
+                .hasSize(STOCK_TRANSACTIONS.size() + 1)
+                .contains(transaction);
+        assertThat(stockPositionDao.findStockPosition(ACCOUNT_NUMBER, "NVDA").orElseThrow().getTransactionCount())
+                .isEqualTo(1);
+    }
+}
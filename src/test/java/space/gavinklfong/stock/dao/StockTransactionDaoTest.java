@@ -0,0 +1,58 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class StockTransactionDaoTest {
+
+    @Test
+    void nextLimit_scalesByMatchRatio() {
+        // 1 in 20 scanned items matched, 8 more matches are needed
+        assertThat(StockTransactionDao.nextLimit(8, 2, 40, 10, 5_000)).isEqualTo(160);
+    }
+
+    @Test
+    void nextLimit_roundsUp() {
+        assertThat(StockTransactionDao.nextLimit(1, 3, 10, 10, 5_000)).isEqualTo(4);
+    }
+
+    @Test
+    void nextLimit_growsWhileNothingMatched() {
+        assertThat(StockTransactionDao.nextLimit(10, 0, 10, 10, 5_000)).isEqualTo(40);
+    }
+
+    @Test
+    void nextLimit_isCappedByScanBudgetAndMaxLimit() {
+        assertThat(StockTransactionDao.nextLimit(10, 1, 500, 500, 120)).isEqualTo(120);
+        assertThat(StockTransactionDao.nextLimit(10, 1, 500, 500, 100_000)).isEqualTo(1_000);
+    }
+
+    @Test
+    void nextLimit_isZeroWhenPageIsFullOrBudgetSpent() {
+        assertThat(StockTransactionDao.nextLimit(0, 10, 20, 10, 5_000)).isZero();
+        assertThat(StockTransactionDao.nextLimit(5, 5, 20, 10, 0)).isZero();
+    }
+
+    @Test
+    void shardedSchema_isRejectedAndHasNoSideTables() {
+        StockTransactionSchema shardedSchema = StockTransactionSchema.builder()
+                .tableName("stock-transaction-sharded")
+                .storageFormat(StockTransactionStorageFormat.COMPACT)
+                .positionTableName("stock-position")
+                .referenceTableName("stock-transaction-reference")
+                .shardCount(4)
+                .build();
+
+        assertThat(shardedSchema.hasPositionTable()).isFalse();
+        assertThat(shardedSchema.hasReferenceTable()).isFalse();
+        assertThatThrownBy(() -> new StockTransactionDao(mock(DynamoDbClient.class), shardedSchema,
+                new StockTransactionDaoMetrics(new SimpleMeterRegistry())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("ShardedStockTransactionDao");
+    }
+}
@@ -0,0 +1,123 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import space.gavinklfong.stock.model.ExportResult;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.util.StockTransactionCsv;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+
+/**
+ * Runs the exporter against {@link InMemoryDynamoDbClient}, scanning small pages and failing part way through.
+ */
+class StockTransactionExporterTest {
+
+    private static final StockTransactionSchema SCHEMA = StockTransactionSchema.builder()
+            .tableName(TABLE_NAME)
+            .storageFormat(StockTransactionStorageFormat.ISO_STRING)
+            .build();
+    private static final int PAGE_SIZE = 20;
+
+    private final PagingDynamoDbClient dynamoDbClient = new PagingDynamoDbClient();
+    private final StockTransactionDaoMetrics metrics = new StockTransactionDaoMetrics(new SimpleMeterRegistry());
+    private final StockTransactionExporter exporter = new StockTransactionExporter(dynamoDbClient, metrics);
+
+    private List<StockTransaction> stockTransactions;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stockTransactions = StockTransactionReader.readFromCSV();
+        new StockTransactionTableBuilder(dynamoDbClient, SCHEMA).createTable();
+        StockTransactionDao stockTransactionDao = new StockTransactionDao(dynamoDbClient, SCHEMA, metrics);
+        stockTransactions.forEach(stockTransactionDao::saveStockTransaction);
+    }
+
+    @Test
+    void resumesFromCheckpointAfterFailingMidSegment(@TempDir Path directory) throws IOException {
+        int totalPages = (stockTransactions.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        dynamoDbClient.failAfterPages(3);
+
+        assertThatThrownBy(() -> exporter.export(SCHEMA, directory, 1))
+                .isInstanceOf(ProvisionedThroughputExceededException.class);
+
+        // an interrupted run may have appended a page after the last checkpoint, the resumed run drops it
+        Path file = directory.resolve(TABLE_NAME + "-0-of-1.csv.gz");
+        Files.write(file, new byte[]{0x1f, (byte) 0x8b, 0x08, 0x00}, APPEND);
+
+        dynamoDbClient.failAfterPages(Integer.MAX_VALUE);
+        ExportResult result = exporter.export(SCHEMA, directory, 1);
+
+        assertThat(dynamoDbClient.scannedPages()).isBetween(totalPages - 3, totalPages - 2);
+        assertThat(result.getExportedCount()).isEqualTo(stockTransactions.size());
+        assertThat(result.getFiles()).containsExactly(file);
+        assertThat(readBack(file)).containsExactlyInAnyOrderElementsOf(stockTransactions);
+    }
+
+    @Test
+    void exportsEverySegmentIntoItsOwnFile(@TempDir Path directory) throws IOException {
+        ExportResult result = exporter.export(SCHEMA, directory, 4);
+
+        assertThat(result.getExportedCount()).isEqualTo(stockTransactions.size());
+        List<StockTransaction> exported = new ArrayList<>();
+        for (Path file : result.getFiles()) {
+            exported.addAll(readBack(file));
+        }
+        assertThat(exported).containsExactlyInAnyOrderElementsOf(stockTransactions);
+    }
+
+    // the gzip members appended page by page read back as one stream with a single header line
+    private static List<StockTransaction> readBack(Path file) throws IOException {
+        List<StockTransaction> transactions = new ArrayList<>();
+        try (Reader in = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)) {
+            StockTransactionCsv.READ_FORMAT.parse(in)
+                    .forEach(csvRecord -> transactions.add(StockTransactionCsv.fromRecord(csvRecord)));
+        }
+        return transactions;
+    }
+
+    // scans pages of PAGE_SIZE items and throttles every scan after the given number of pages
+    private static class PagingDynamoDbClient extends InMemoryDynamoDbClient {
+
+        private final AtomicInteger scannedPages = new AtomicInteger();
+        private volatile int failAfterPages = Integer.MAX_VALUE;
+
+        void failAfterPages(int pages) {
+            scannedPages.set(0);
+            failAfterPages = pages;
+        }
+
+        int scannedPages() {
+            return scannedPages.get();
+        }
+
+        @Override
+        public ScanResponse scan(ScanRequest request) {
+            if (scannedPages.get() >= failAfterPages) {
+                throw ProvisionedThroughputExceededException.builder().message("throttled").build();
+            }
+            scannedPages.incrementAndGet();
+            return super.scan(request.toBuilder().limit(PAGE_SIZE).build());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.ImportResult;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.util.StockTransactionReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StockTransactionImporterTest {
+
+    private final StockTransactionBatchWriter batchWriter = mock(StockTransactionBatchWriter.class);
+    private final StockTransactionImporter importer = new StockTransactionImporter(batchWriter);
+    private final Queue<StockTransaction> written = new ConcurrentLinkedQueue<>();
+
+    @Test
+    void importsEveryRowAcrossRanges() throws IOException {
+        recordWrites();
+        Path file = new ClassPathResource("stock_transaction.csv").getFile().toPath();
+        List<StockTransaction> expected = StockTransactionReader.readFromCSV();
+
+        // ranges of a few lines each, most boundaries falling in the middle of a line
+        ImportResult result = importer.importCsv(file, 200, 3, 2);
+
+        assertThat(written).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(result.getRowCount()).isEqualTo(expected.size());
+        assertThat(result.getMalformedRowCount()).isZero();
+    }
+
+    @Test
+    void skipsMalformedLines(@TempDir Path directory) throws IOException {
+        recordWrites();
+        Path file = directory.resolve("stock_transaction.csv");
+        Files.writeString(file, """
+                AccountNumber,Timestamp,Ticker,TradeAction,UnitPrice,Unit,Reference
+                91245776,2022-01-01T00:00:00.084Z,APPL,BUY,66.542503,451,
+                91245776,not-a-timestamp,APPL,BUY,66.542503,451
+                91245776,2022-01-01T16:29:20.712Z,APPL,SELL,68.334999,159,"ORD-1,retry"\r
+                91245776,2022-01-02T16:29:20.712Z,APPL
+                """);
+
+        ImportResult result = importer.importCsv(file);
+
+        assertThat(result.getRowCount()).isEqualTo(2);
+        assertThat(result.getMalformedRowCount()).isEqualTo(2);
+        assertThat(written).extracting(StockTransaction::getReference).containsExactlyInAnyOrder(null, "ORD-1,retry");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordWrites() {
+        when(batchWriter.saveStockTransactions(any(Iterator.class), anyInt())).thenAnswer(invocation -> {
+            Iterator<StockTransaction> transactions = invocation.getArgument(0);
+            long count = 0;
+            while (transactions.hasNext()) {
+                written.add(transactions.next());
+                count++;
+            }
+            return BatchWriteResult.builder()
+                    .writtenCount(count)
+                    .failures(List.of())
+                    .build();
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.StockTransactionKey;
+import space.gavinklfong.stock.model.StockTransactionSummary;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockTransactionStorageFormatTest {
+
+    private static final StockTransaction STOCK_TRANSACTION = StockTransaction.builder()
+            .accountNumber("91245776")
+            .timestamp(Instant.parse("2022-01-01T16:29:20.712Z"))
+            .ticker("APPL")
+            .tradeAction(TradeAction.BUY)
+            .unit(159)
+            .unitPrice(new BigDecimal("68.334999"))
+            .build();
+
+    @ParameterizedTest
+    @EnumSource(StockTransactionStorageFormat.class)
+    void itemRoundTrip(StockTransactionStorageFormat format) {
+        Map<String, AttributeValue> item = format.toItem(STOCK_TRANSACTION);
+
+        assertThat(format.toStockTransaction(item)).isEqualTo(STOCK_TRANSACTION);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StockTransactionStorageFormat.class)
+    void itemRoundTripWithReference(StockTransactionStorageFormat format) {
+        StockTransaction transaction = STOCK_TRANSACTION.toBuilder().reference("ORD-20220101-0001").build();
+
+        assertThat(format.toStockTransaction(format.toItem(transaction))).isEqualTo(transaction);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StockTransactionStorageFormat.class)
+    void keyRoundTrip(StockTransactionStorageFormat format) {
+        StockTransactionKey key = StockTransactionKey.builder()
+                .accountNumber(STOCK_TRANSACTION.getAccountNumber())
+                .timestamp(STOCK_TRANSACTION.getTimestamp())
+                .build();
+
+        assertThat(format.toStockTransactionKey(format.toKey(key))).isEqualTo(key);
+    }
+
+    @ParameterizedTest
+    @EnumSource(StockTransactionStorageFormat.class)
+    void summaryFromProjectedItem(StockTransactionStorageFormat format) {
+        Map<String, AttributeValue> item = format.toItem(STOCK_TRANSACTION);
+        item.keySet().retainAll(Set.of(format.getTimestampAttribute(), format.getTickerAttribute(),
+                format.getTradeActionAttribute(), format.getUnitAttribute()));
+
+        assertThat(format.toStockTransactionSummary(item)).isEqualTo(StockTransactionSummary.builder()
+                .timestamp(STOCK_TRANSACTION.getTimestamp())
+                .ticker(STOCK_TRANSACTION.getTicker())
+                .tradeAction(STOCK_TRANSACTION.getTradeAction())
+                .unit(STOCK_TRANSACTION.getUnit())
+                .build());
+    }
+
+    @Test
+    void compactFormatUsesNumericEpochNanosSortKey() {
+        Map<String, AttributeValue> item = StockTransactionStorageFormat.COMPACT.toItem(STOCK_TRANSACTION);
+
+        assertThat(item.get("t").n()).isEqualTo("1641054560712000000");
+        assertThat(item).containsOnlyKeys("a", "t", "k", "s", "u", "p", "as");
+    }
+
+    @Test
+    void compactSortKeyPreservesOrdering() {
+        Instant earlier = Instant.parse("1969-12-31T23:59:59.999999999Z");
+        Instant later = Instant.parse("1970-01-01T00:00:00Z");
+
+        long earlierNanos = Long.parseLong(StockTransactionStorageFormat.COMPACT.toTimestampValue(earlier).n());
+        long laterNanos = Long.parseLong(StockTransactionStorageFormat.COMPACT.toTimestampValue(later).n());
+
+        assertThat(earlierNanos).isLessThan(laterNanos);
+    }
+
+    @Test
+    void decodesItemsOfEitherFormat() {
+        Map<String, AttributeValue> isoItem = StockTransactionStorageFormat.ISO_STRING.toItem(STOCK_TRANSACTION);
+        Map<String, AttributeValue> compactItem = StockTransactionStorageFormat.COMPACT.toItem(STOCK_TRANSACTION);
+
+        assertThat(StockTransactionStorageFormat.COMPACT.toStockTransaction(isoItem)).isEqualTo(STOCK_TRANSACTION);
+        assertThat(StockTransactionStorageFormat.ISO_STRING.toStockTransaction(compactItem)).isEqualTo(STOCK_TRANSACTION);
+    }
+
+    @Test
+    void isoStringFormatKeepsOriginalItemLayout() {
+        assertThat(StockTransactionStorageFormat.ISO_STRING.toItem(STOCK_TRANSACTION))
+                .isEqualTo(Map.of(
+                        "accountNumber", AttributeValue.fromS("91245776"),
+                        "timestamp", AttributeValue.fromS("2022-01-01T16:29:20.712Z"),
+                        "ticker", AttributeValue.fromS("APPL"),
+                        "tradeAction", AttributeValue.fromS("BUY"),
+                        "unit", AttributeValue.fromN("159"),
+                        "unitPrice", AttributeValue.fromN("68.334999"),
+                        "accountNumberTradeAction", AttributeValue.fromS("91245776#BUY")));
+    }
+}
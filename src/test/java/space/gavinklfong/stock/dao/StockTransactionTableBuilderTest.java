@@ -0,0 +1,88 @@
+package space.gavinklfong.stock.dao;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.ACCOUNT_TRADE_ACTION_INDEX;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.POSITION_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.REFERENCE_TABLE_NAME;
+import static space.gavinklfong.stock.dao.DynamoDBTableConstant.TABLE_NAME;
+
+class StockTransactionTableBuilderTest {
+
+    private final DynamoDbClient dynamoDbClient = mock(DynamoDbClient.class, RETURNS_DEEP_STUBS);
+
+    @Test
+    void defaultSchemaCreatesOnlyTheTransactionTable() {
+        List<CreateTableRequest> requests = createTables(StockTransactionSchema.DEFAULT);
+
+        assertThat(requests).extracting(CreateTableRequest::tableName).containsExactly(TABLE_NAME);
+        assertThat(requests.getFirst().globalSecondaryIndexes())
+                .extracting(GlobalSecondaryIndex::indexName)
+                .containsExactly(ACCOUNT_TRADE_ACTION_INDEX);
+        assertThat(requests.getFirst().attributeDefinitions())
+                .extracting(AttributeDefinition::attributeName)
+                .doesNotContain(StockTransactionSchema.DEFAULT.getStorageFormat().getTickerAttribute());
+    }
+
+    @Test
+    void onDemandTablesHaveNoProvisionedThroughput() {
+        List<CreateTableRequest> requests = createTables(schemaWithSideTables(StockTransactionCapacity.ON_DEMAND));
+
+        assertThat(requests).hasSize(3).allSatisfy(request -> {
+            assertThat(request.billingMode()).isEqualTo(BillingMode.PAY_PER_REQUEST);
+            assertThat(request.provisionedThroughput()).isNull();
+            assertThat(request.globalSecondaryIndexes())
+                    .allSatisfy(index -> assertThat(index.provisionedThroughput()).isNull());
+        });
+    }
+
+    @Test
+    void provisionedTablesAndIndexesGetConfiguredUnits() {
+        StockTransactionSchema schema = schemaWithSideTables(StockTransactionCapacity.builder()
+                .billingMode(BillingMode.PROVISIONED)
+                .readCapacityUnits(20)
+                .writeCapacityUnits(10)
+                .bulkShare(0.5)
+                .build());
+        ProvisionedThroughput expected = ProvisionedThroughput.builder()
+                .readCapacityUnits(20L)
+                .writeCapacityUnits(10L)
+                .build();
+
+        List<CreateTableRequest> requests = createTables(schema);
+
+        assertThat(requests.getFirst().globalSecondaryIndexes()).hasSize(2);
+        assertThat(requests).hasSize(3).allSatisfy(request -> {
+            assertThat(request.billingMode()).isEqualTo(BillingMode.PROVISIONED);
+            assertThat(request.provisionedThroughput()).isEqualTo(expected);
+            assertThat(request.globalSecondaryIndexes())
+                    .allSatisfy(index -> assertThat(index.provisionedThroughput()).isEqualTo(expected));
+        });
+    }
+
+    private List<CreateTableRequest> createTables(StockTransactionSchema schema) {
+        new StockTransactionTableBuilder(dynamoDbClient, schema).createTable();
+
+        ArgumentCaptor<CreateTableRequest> captor = ArgumentCaptor.forClass(CreateTableRequest.class);
+        verify(dynamoDbClient, atLeastOnce()).createTable(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static StockTransactionSchema schemaWithSideTables(StockTransactionCapacity capacity) {
+        return StockTransactionSchema.builder()
+                .tableName(TABLE_NAME)
+                .storageFormat(StockTransactionStorageFormat.ISO_STRING)
+                .positionTableName(POSITION_TABLE_NAME)
+                .referenceTableName(REFERENCE_TABLE_NAME)
+                .tickerIndex(true)
+                .capacity(capacity)
+                .build();
+    }
+}
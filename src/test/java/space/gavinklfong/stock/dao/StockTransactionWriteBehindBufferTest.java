@@ -0,0 +1,219 @@
+package space.gavinklfong.stock.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import space.gavinklfong.stock.config.StockTransactionWriteBehindProperties;
+import space.gavinklfong.stock.model.BatchWriteFailure;
+import space.gavinklfong.stock.model.BatchWriteResult;
+import space.gavinklfong.stock.model.StockTransaction;
+import space.gavinklfong.stock.model.TradeAction;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StockTransactionWriteBehindBufferTest {
+
+    private static final String ACCOUNT_NUMBER = "91245776";
+
+    private final StockTransactionBatchWriter batchWriter = mock(StockTransactionBatchWriter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Queue<StockTransaction> written = new ConcurrentLinkedQueue<>();
+    private StockTransactionWriteBehindBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        buffer.close();
+    }
+
+    @Test
+    void flushesQueuedTransactionsOnClose() {
+        recordWrites();
+        buffer = buffer(1_000, 100, Duration.ofHours(1));
+
+        List<StockTransaction> transactions = transactions(250);
+        transactions.forEach(buffer::saveStockTransaction);
+        buffer.close();
+
+        assertThat(written).containsExactlyInAnyOrderElementsOf(transactions);
+        assertThat(buffer.size()).isZero();
+        assertThat(meterRegistry.get(StockTransactionWriteBehindBuffer.FLUSH_TIMER).timer().count()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void flushesAfterInterval() throws InterruptedException {
+        CountDownLatch flushed = new CountDownLatch(1);
+        when(batchWriter.saveStockTransactions(any(Iterator.class))).thenAnswer(invocation -> {
+            flushed.countDown();
+            return BatchWriteResult.builder().writtenCount(1).failures(List.of()).build();
+        });
+        buffer = buffer(1_000, 100, Duration.ofMillis(10));
+
+        buffer.saveStockTransaction(transactions(1).get(0));
+
+        assertThat(flushed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void rejectsWhenFullAfterOfferTimeout() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchWriter.saveStockTransactions(any(Iterator.class))).thenAnswer(invocation -> {
+            release.await();
+            return BatchWriteResult.builder().writtenCount(0).failures(List.of()).build();
+        });
+        buffer = buffer(2, 1, Duration.ofMillis(1));
+
+        // the first flush blocks, so the queue fills up behind it
+        List<StockTransaction> transactions = transactions(4);
+        buffer.saveStockTransaction(transactions.get(0));
+        await(() -> buffer.size() == 0);
+        buffer.saveStockTransaction(transactions.get(1));
+        buffer.saveStockTransaction(transactions.get(2));
+
+        assertThatThrownBy(() -> buffer.saveStockTransaction(transactions.get(3)))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(meterRegistry.get(StockTransactionWriteBehindBuffer.REJECTED_COUNTER).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(StockTransactionWriteBehindBuffer.QUEUE_DEPTH_GAUGE).gauge().value()).isEqualTo(2);
+
+        release.countDown();
+    }
+
+    @Test
+    void requeuesFailedTransactionsAndKeepsThoseGivenUp() {
+        List<StockTransaction> transactions = transactions(3);
+        StockTransaction failsOnce = transactions.get(0);
+        StockTransaction conflicting = transactions.get(1);
+        StockTransaction keepsFailing = transactions.get(2);
+        Set<StockTransaction> failedOnce = ConcurrentHashMap.newKeySet();
+        when(batchWriter.saveStockTransactions(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<StockTransaction> batch = invocation.getArgument(0);
+            List<BatchWriteFailure> failures = new ArrayList<>();
+            while (batch.hasNext()) {
+                StockTransaction transaction = batch.next();
+                if (transaction == conflicting) {
+                    failures.add(failure(transaction, "already exists", false));
+                } else if (transaction == keepsFailing || failedOnce.add(transaction)) {
+                    failures.add(failure(transaction, "throttled", true));
+                } else {
+                    written.add(transaction);
+                }
+            }
+            return BatchWriteResult.builder().writtenCount(written.size()).failures(failures).build();
+        });
+        buffer = buffer(1_000, 100, Duration.ofHours(1));
+
+        transactions.forEach(buffer::saveStockTransaction);
+        buffer.close();
+
+        assertThat(written).containsExactly(failsOnce);
+        assertThat(buffer.drainFailures())
+                .extracting(BatchWriteFailure::getStockTransaction)
+                .containsExactlyInAnyOrder(conflicting, keepsFailing);
+        assertThat(buffer.drainFailures()).isEmpty();
+        // the conflicting transaction is written once, the failing one up to max-flush-attempts times
+        verify(batchWriter, times(3)).saveStockTransactions(any(Iterator.class));
+        assertThat(meterRegistry.get(StockTransactionWriteBehindBuffer.RETRIED_COUNTER).counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get(StockTransactionWriteBehindBuffer.FAILED_COUNTER).counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void saveRacingCloseIsEitherFlushedOrRejected() throws Exception {
+        recordWrites();
+        buffer = buffer(100_000, 100, Duration.ofMillis(1));
+        Queue<StockTransaction> accepted = new ConcurrentLinkedQueue<>();
+        CountDownLatch saving = new CountDownLatch(4);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int thread = 0; thread < 4; thread++) {
+                executor.execute(() -> {
+                    saving.countDown();
+                    for (StockTransaction transaction : transactions(10_000)) {
+                        try {
+                            buffer.saveStockTransaction(transaction);
+                            accepted.add(transaction);
+                        } catch (IllegalStateException e) {
+                            return;
+                        }
+                    }
+                });
+            }
+            saving.await();
+            buffer.close();
+        }
+
+        assertThat(written).hasSameSizeAs(accepted).containsExactlyInAnyOrderElementsOf(accepted);
+        assertThat(buffer.size()).isZero();
+    }
+
+    private void recordWrites() {
+        when(batchWriter.saveStockTransactions(any(Iterator.class))).thenAnswer(invocation -> {
+            Iterator<StockTransaction> transactions = invocation.getArgument(0);
+            int count = 0;
+            while (transactions.hasNext()) {
+                written.add(transactions.next());
+                count++;
+            }
+            return BatchWriteResult.builder().writtenCount(count).failures(List.of()).build();
+        });
+    }
+
+    private static BatchWriteFailure failure(StockTransaction transaction, String reason, boolean retryable) {
+        return BatchWriteFailure.builder()
+                .stockTransaction(transaction)
+                .reason(reason)
+                .retryable(retryable)
+                .build();
+    }
+
+    private StockTransactionWriteBehindBuffer buffer(int capacity, int flushSize, Duration flushInterval) {
+        StockTransactionWriteBehindProperties properties = new StockTransactionWriteBehindProperties();
+        properties.setCapacity(capacity);
+        properties.setFlushSize(flushSize);
+        properties.setFlushInterval(flushInterval);
+        properties.setOfferTimeout(Duration.ofMillis(50));
+        properties.setShutdownTimeout(Duration.ofSeconds(5));
+        return new StockTransactionWriteBehindBuffer(batchWriter, properties, meterRegistry);
+    }
+
+    private static List<StockTransaction> transactions(int count) {
+        Instant start = Instant.parse("2022-01-01T00:00:00Z");
+        return IntStream.range(0, count)
+                .mapToObj(i -> StockTransaction.builder()
+                        .accountNumber(ACCOUNT_NUMBER)
+                        .timestamp(start.plusSeconds(i))
+                        .ticker("APPL")
+                        .tradeAction(TradeAction.BUY)
+                        .unit(1)
+                        .unitPrice(BigDecimal.TEN)
+                        .build())
+                .toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}